@@ -1,19 +1,74 @@
 package com.changent.entities;
 
 import com.changent.services.ProductService;
+import com.changent.valueobjects.Money;
 import com.changent.valueobjects.USDollar;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.*;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * A cart may be shared between threads, e.g. by several requests for the same customer.
+ * Each product is updated atomically, so concurrent changes to the same product are
+ * never lost, while changes to different products proceed in parallel.
+ */
 public class Cart {
     public Cart(ProductService productService) {
+        this(productService, DEFAULT_TAX);
+    }
+
+    /**
+     * A cart taxed by the calculator, e.g. one for the customer's region from a TaxTable.
+     */
+    public Cart(ProductService productService, TaxCalculator taxCalculator) {
         Objects.requireNonNull(productService, "ProductService is invalid.");
+        Objects.requireNonNull(taxCalculator, "TaxCalculator is invalid.");
 
         this.productService = productService;
+        this.taxCalculator = taxCalculator;
     }
 
+    /**
+     * 12.5% on everything, rounded per invoice.
+     */
+    public static final TaxCalculator DEFAULT_TAX = TaxCalculator.flat(Money.millionthsOf(0.125));
+
     private final ProductService productService;
-    private final HashMap<String, Item> items = new HashMap<>();
+    private final TaxCalculator taxCalculator;
+    private final ConcurrentHashMap<String, Item> items = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Discount> discounts = new ConcurrentHashMap<>();
+
+    // Kept up to date by every mutation so the totals never have to be re-summed.
+    private final LongAdder totalProductCount = new LongAdder();
+    private final LongAdder subtotalInCents = new LongAdder();
+    private final LongAdder discountInCents = new LongAdder();
+    // The lines' tax in whole cents, plus, when rounding per invoice, what each line's tax
+    // has beyond its whole cents, in millionths of a cent. Rounded when read.
+    private final LongAdder taxInWholeCents = new LongAdder();
+    private final LongAdder taxRemainderInMillionths = new LongAdder();
+
+    private final List<CartListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Bumped after every change is made, so a quote tagged with the current version is up to date.
+    private final AtomicLong version = new AtomicLong();
+    private volatile CartQuote quote;
+
+    public void addListener(CartListener listener) {
+        Objects.requireNonNull(listener, "CartListener is invalid.");
+
+        listeners.add(listener);
+    }
+
+    public void removeListener(CartListener listener) {
+        listeners.remove(listener);
+    }
 
     public void addItem(Item item) {
         addProduct(item.title(), item.quantity());
@@ -32,17 +87,135 @@ public class Cart {
 
         Optional<Product> serviceResult = productService.getBy(productName);
 
-        if(serviceResult.isEmpty()) return;
+        if(serviceResult.isEmpty()) {
+            for (CartListener listener : listeners) listener.notFound(this, productName);
+            return;
+        }
 
-        Item item = items.get(productName);
+        add(productName, serviceResult.get(), quantity);
+    }
 
-        if (item == null) {
-            items.put(productName, new Item(serviceResult.get(), quantity));
-            return;
+    /**
+     * Adds each product with its quantity, as addProduct does.
+     * All products are looked up concurrently, then added in the
+     * iteration order of the given map once every lookup completes.
+     * Quantities are validated before any lookup is made.
+     */
+    public void addProducts(Map<String, Integer> quantitiesByProductName) {
+        Objects.requireNonNull(quantitiesByProductName, "Products are invalid.");
+
+        for (int quantity : quantitiesByProductName.values()) {
+            if (quantity < 0) throw new IllegalArgumentException("Cannot add item with negative quantity.");
         }
 
-        Item updated = item.incrementAmountBy(quantity);
-        items.put(productName, updated);
+        Map<String, CompletableFuture<Optional<Product>>> lookups = new LinkedHashMap<>();
+        quantitiesByProductName.forEach((productName, quantity) -> {
+            if (quantity != 0) lookups.put(productName, productService.getByAsync(productName));
+        });
+
+        CompletableFuture.allOf(lookups.values().toArray(CompletableFuture<?>[]::new)).join();
+
+        lookups.forEach((productName, lookup) -> {
+            Optional<Product> product = lookup.join();
+
+            if (product.isPresent()) {
+                add(productName, product.get(), quantitiesByProductName.get(productName));
+            } else {
+                for (CartListener listener : listeners) listener.notFound(this, productName);
+            }
+        });
+    }
+
+    /**
+     * Streams the whole cart, its items and totals, as one JSON document.
+     * Items are written one at a time, so memory use does not grow with the cart.
+     * The cart is not locked meanwhile: if it is changed while being written, the
+     * totals may not match the items written. The stream is flushed, not closed.
+     */
+    public void writeTo(OutputStream out) {
+        Objects.requireNonNull(out, "OutputStream is invalid.");
+
+        JsonCodec.writeCart(this, out);
+    }
+
+    /**
+     * Reads a cart written by writeTo.
+     * Items are restored at the prices recorded in the document, without
+     * looking them up; the productService is used by later additions.
+     * The stream is not closed.
+     */
+    public static Cart readFrom(InputStream in, ProductService productService) {
+        Objects.requireNonNull(in, "InputStream is invalid.");
+
+        Cart cart = new Cart(productService);
+        JsonCodec.readCart(in, cart);
+        return cart;
+    }
+
+    /**
+     * Adds the item under the product name at the item's own price, without
+     * looking the product up, e.g. when replaying a stored cart.
+     */
+    public void restore(String productName, Item item) {
+        Objects.requireNonNull(productName, "Product name is invalid.");
+        Objects.requireNonNull(item, "Item is invalid.");
+
+        if (item.quantity() == 0) return;
+
+        add(productName, ProductRegistry.canonical(item.product()), item.quantity());
+    }
+
+    /**
+     * Passes each product name and its item to the action. Changes made meanwhile may or may not be seen.
+     */
+    public void forEachItem(BiConsumer<String, Item> action) {
+        Objects.requireNonNull(action, "Action is invalid.");
+
+        items.forEach(action);
+    }
+
+    /**
+     * Moves every line of the product's title to the product's price, adjusting the
+     * totals by the difference. Quantities are unchanged. Returns the number of lines
+     * repriced, which is zero if the cart has none of the title or already has its price.
+     */
+    public int reprice(Product product) {
+        Objects.requireNonNull(product, "Product is invalid.");
+
+        Product canonical = ProductRegistry.canonical(product);
+        int[] repriced = {0};
+
+        for (Map.Entry<String, Item> entry : items.entrySet()) {
+            // Most lines are of other products; skip them without locking.
+            if (!needsRepricing(entry.getValue(), canonical)) continue;
+
+            items.computeIfPresent(entry.getKey(), (name, item) -> {
+                if (!needsRepricing(item, canonical)) return item;
+
+                Item updated = new Item(canonical, item.quantity());
+                for (CartListener listener : listeners) listener.repriced(this, name, updated, item.price());
+                addToTotals(item, updated);
+                repriced[0]++;
+                return updated;
+            });
+        }
+
+        if (repriced[0] > 0) version.incrementAndGet();
+        return repriced[0];
+    }
+
+    private static boolean needsRepricing(Item item, Product product) {
+        return item.title().equals(product.title()) && !item.price().equals(product.price());
+    }
+
+    private void add(String productName, Product product, int quantity) {
+        items.compute(productName, (name, item) -> {
+            Item updated = item == null ? new Item(product, quantity) : item.incrementAmountBy(quantity);
+            for (CartListener listener : listeners) listener.added(this, name, updated, quantity);
+            addToTotals(item, updated);
+            return updated;
+        });
+        version.incrementAndGet();
     }
 
     public void removeItem(Item item) {
@@ -61,33 +234,175 @@ public class Cart {
         if (quantity == 0) return;
         if (quantity < 0) throw new IllegalArgumentException("Cannot remove item with a negative quantity.");
 
-        Item item = items.get(productName);
+        boolean[] changed = {false};
+        items.computeIfPresent(productName, (name, item) -> {
+            Item updated = item.decrementAmountBy(quantity);
+            int removed = item.quantity() - updated.quantity();
+            if (removed == 0) return item;
 
-        if (item == null) return;
+            for (CartListener listener : listeners) listener.removed(this, name, updated, removed);
+            addToTotals(item, updated);
+            changed[0] = true;
 
-        Item updated = item.decrementAmountBy(quantity);
-        if (updated.quantity() == 0) {
-            items.remove(productName);
-            return;
+            return updated.quantity() == 0 ? null : updated;
+        });
+
+        // An absent product leaves the cart, and so its cached quote, as it was.
+        if (changed[0]) version.incrementAndGet();
+    }
+
+    /**
+     * Moves the totals from a line's item before a change to its item after it.
+     * Either may be null, for a line that is being added or was not there.
+     */
+    private void addToTotals(Item before, Item after) {
+        totalProductCount.add(quantityOf(after) - quantityOf(before));
+        subtotalInCents.add(Math.subtractExact(lineCentsOf(after), lineCentsOf(before)));
+        if (before != null) addToTax(before.title(), lineCentsOf(before), -1);
+        if (after != null) addToTax(after.title(), lineCentsOf(after), 1);
+    }
+
+    private static int quantityOf(Item item) {
+        return item == null ? 0 : item.quantity();
+    }
+
+    private static long lineCentsOf(Item item) {
+        return item == null ? 0 : Money.multiply(item.price().cents(), item.quantity());
+    }
+
+    /**
+     * Adds the tax on a line to the running tax, or with a sign of -1 takes it off.
+     */
+    private void addToTax(String title, long lineCents, int sign) {
+        long rate = taxCalculator.rateInMillionths(title);
+
+        if (taxCalculator.rounding() == TaxRounding.PER_LINE) {
+            taxInWholeCents.add(sign * Money.multiplyUsingBankersRounding(lineCents, rate));
+        } else {
+            taxInWholeCents.add(sign * Money.multiplyRoundingDown(lineCents, rate));
+            taxRemainderInMillionths.add(sign * Money.remainderOfMultiply(lineCents, rate));
         }
+    }
 
-        items.put(productName, updated);
+    /**
+     * Sets the promotion's discount line, replacing the one it had.
+     * A discount of zero removes the line.
+     */
+    public void applyDiscount(Discount discount) {
+        Objects.requireNonNull(discount, "Discount is invalid.");
+
+        Discount updated = discount.amount().cents() == 0 ? null : discount;
+        // Promotions are re-evaluated on every change of their titles, mostly to the same discount.
+        if (Objects.equals(discounts.get(discount.promotionId()), updated)) return;
+
+        boolean[] changed = {false};
+        discounts.compute(discount.promotionId(), (promotionId, previous) -> {
+            if (Objects.equals(previous, updated)) return previous;
+
+            if (previous != null) {
+                discountInCents.add(-previous.amount().cents());
+                addToTax(previous.title(), -previous.amount().cents(), -1);
+            }
+            if (updated != null) {
+                discountInCents.add(updated.amount().cents());
+                addToTax(updated.title(), -updated.amount().cents(), 1);
+            }
+            changed[0] = true;
+            return updated;
+        });
+
+        if (changed[0]) version.incrementAndGet();
     }
 
-    public int getTotalProductCount() {
-        List<Item> valueList = new ArrayList<>(this.items.values());
+    /**
+     * The discount lines, ordered by promotion id.
+     */
+    public List<Discount> discounts() {
+        List<Discount> lines = new ArrayList<>(discounts.values());
+        lines.sort(Comparator.comparing(Discount::promotionId));
+        return lines;
+    }
 
-        if (valueList.size() == 0) return 0;
+    public USDollar getDiscount() {
+        return Money.ofCents(discountInCents.sum()).toUSDollar();
+    }
+
+    /**
+     * Prices the cart in one pass over its lines. The quote is kept and returned
+     * again until the cart next changes.
+     */
+    public CartQuote quote() {
+        // Read before the lines, so a change made while they are read leaves the quote stale, not wrong.
+        long current = version.get();
+        CartQuote cached = quote;
+        if (cached != null && cached.version() == current) return cached;
+
+        long start = listeners.isEmpty() ? 0 : System.nanoTime();
+
+        List<CartQuote.Line> lines = new ArrayList<>(items.size());
+        int itemCount = 0;
+        long subtotal = 0;
+        String[] titles = new String[items.size()];
+        long[] lineCents = new long[titles.length];
+
+        for (Map.Entry<String, Item> entry : items.entrySet()) {
+            Item item = entry.getValue();
+            Money linePrice = item.linePrice();
+
+            lines.add(new CartQuote.Line(entry.getKey(), item.title(), item.price(), item.quantity(), linePrice));
+            itemCount += item.quantity();
+            subtotal = Money.add(subtotal, linePrice.cents());
+
+            // The map may have grown since the arrays were sized.
+            if (lines.size() > titles.length) {
+                titles = Arrays.copyOf(titles, titles.length * 2 + 1);
+                lineCents = Arrays.copyOf(lineCents, titles.length);
+            }
+            titles[lines.size() - 1] = item.title();
+            lineCents[lines.size() - 1] = linePrice.cents();
+        }
+        lines.sort(Comparator.comparing(CartQuote.Line::productName));
+
+        List<Discount> discountLines = discounts();
+        int lineCount = lines.size();
+        if (lineCount + discountLines.size() > titles.length) {
+            titles = Arrays.copyOf(titles, lineCount + discountLines.size());
+            lineCents = Arrays.copyOf(lineCents, titles.length);
+        }
+        for (Discount discount : discountLines) {
+            subtotal = Math.subtractExact(subtotal, discount.amount().cents());
+            titles[lineCount] = discount.title();
+            lineCents[lineCount++] = -discount.amount().cents();
+        }
 
-        // TODO: could use a stream. Is it simpler? More efficient? I like it, though.
-        // It would mean not reassigning the local variable `count`. A good thing.
-        int count = 0;
+        long tax = taxCalculator.taxInCents(titles, lineCents, lineCount);
+        CartQuote priced = new CartQuote(
+                current,
+                lines,
+                discountLines,
+                itemCount,
+                Money.ofCents(subtotal).toUSDollar(),
+                Money.ofCents(tax).toUSDollar(),
+                Money.ofCents(Money.add(subtotal, tax)).toUSDollar()
+        );
 
-        for (Item item : valueList) {
-            count += item.quantity();
+        quote = priced;
+        if (!listeners.isEmpty()) {
+            long elapsed = System.nanoTime() - start;
+            for (CartListener listener : listeners) listener.quoted(this, priced, elapsed);
         }
+        return priced;
+    }
 
-        return count;
+    /**
+     * Counts the changes made to the cart.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    public int getTotalProductCount() {
+        return totalProductCount.intValue();
     }
 
     public int getCountForProduct(String productName) {
@@ -98,41 +413,30 @@ public class Cart {
         return item.quantity();
     }
 
+    /**
+     * The price of the items less any discounts.
+     */
     public USDollar getSubtotal() {
-        List<Item> valueList = new ArrayList<>(this.items.values());
-
-        if (valueList.size() == 0) return new USDollar("0.0");
+        return Money.ofCents(subtotalInCents()).toUSDollar();
+    }
 
-        double subtotal = 0;
+    public USDollar getTaxPayable() {
+        return Money.ofCents(taxInCents()).toUSDollar();
+    }
 
-        // TODO: item probably should have a total price method. That is, imo, where the
-        // logic should be -> more cohesive. It would also simplify the streaming, I think.
-        // TODO: could use a stream. This is not as straightforward as it would be in getTotalProductCount()
-        // It would mean not reassigning the local variable `subtotal`. A good thing.
-        for (Item item : valueList) {
-            subtotal +=
-                    item.quantity()
-                            * item.unitPrice();
-        }
+    public USDollar getTotalPayable() {
+        return Money.ofCents(Money.add(subtotalInCents(), taxInCents())).toUSDollar();
+    }
 
-        return new USDollar(subtotal);
+    public TaxCalculator taxCalculator() {
+        return taxCalculator;
     }
 
-    public USDollar getTaxPayable() {
-        // TODO(wltiii): Make tax a named constant (allowing for retrieval based on locale of user - requires capturing user info!)
-        return getSubtotal().multiplyUsingBankersRoundingBy(0.125);
+    private long subtotalInCents() {
+        return Math.subtractExact(subtotalInCents.sum(), discountInCents.sum());
     }
 
-    public USDollar getTotalPayable() {
-        // TODO(wltiii): this has higher level coupling than I would like, though replicating the logic of the two calls
-        // seems overkill. A somewhat better approach would be to create two private methods.
-        // Still, technically having the coupling, but as it is private is it better? I don't
-        // think so.
-        // TODO(wltiii): USDollar should have a method to add two USDollars. As written, this
-        // is a "train wreck".
-        return new USDollar(
-                        getSubtotal().get().doubleValue() +
-                                getTaxPayable().get().doubleValue()
-        );
+    private long taxInCents() {
+        return Money.roundUsingBankersRounding(taxInWholeCents.sum(), taxRemainderInMillionths.sum());
     }
 }
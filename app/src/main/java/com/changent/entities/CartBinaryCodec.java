@@ -0,0 +1,253 @@
+package com.changent.entities;
+
+import com.changent.services.ProductService;
+import com.changent.valueobjects.Money;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * A compact, versioned binary encoding of a cart's items, e.g. for session storage.
+ *
+ * <pre>
+ * byte version, byte flags
+ * long dictionary fingerprint, when flags has DICTIONARY
+ * per line:
+ *   varint reference, 1 when the product is inline, otherwise its dictionary id + 2
+ *   inline only: varint name length, name, varint title length, title
+ *                (a title length of 0 means the title is the name)
+ *   varint price in cents, varint quantity
+ * varint 0, ending the lines
+ * </pre>
+ *
+ * Varints are unsigned LEB128 and strings UTF-8. When a ProductDictionary, such as
+ * a catalog snapshot, is supplied, products it knows are written as a reference.
+ * Prices are always written, so a cart decodes at the prices it was encoded at.
+ * The cart's TaxCalculator is not encoded: decode into a cart made with the one
+ * it had, as decode(in, productService) makes one on DEFAULT_TAX.
+ */
+public final class CartBinaryCodec {
+    private CartBinaryCodec() {}
+
+    static final byte VERSION = 1;
+    static final byte DICTIONARY = 1;
+
+    private static final int END = 0;
+    private static final int INLINE = 1;
+    private static final int FIRST_ID = 2;
+
+    public static int encodedSize(Cart cart) {
+        return encodedSize(cart, null);
+    }
+
+    public static int encodedSize(Cart cart, ProductDictionary dictionary) {
+        int[] size = {2 + (dictionary == null ? 0 : Long.BYTES) + varintSize(END)};
+
+        cart.forEachItem((name, item) -> {
+            int id = idOf(dictionary, name, item);
+
+            if (id == ProductDictionary.NOT_FOUND) {
+                size[0] += varintSize(INLINE) + stringSize(name) + titleSize(name, item);
+            } else {
+                size[0] += varintSize(FIRST_ID + (long) id);
+            }
+            size[0] += varintSize(item.price().cents()) + varintSize(item.quantity());
+        });
+
+        return size[0];
+    }
+
+    public static void encode(Cart cart, ByteBuffer out) {
+        encode(cart, out, null);
+    }
+
+    /**
+     * Writes the cart at the buffer's position; encodedSize gives the room needed.
+     * Throws BufferOverflowException if the buffer runs out of room, in which case
+     * what was written is incomplete.
+     */
+    public static void encode(Cart cart, ByteBuffer out, ProductDictionary dictionary) {
+        Objects.requireNonNull(cart, "Cart is invalid.");
+        Objects.requireNonNull(out, "ByteBuffer is invalid.");
+
+        out.put(VERSION);
+        out.put(dictionary == null ? 0 : DICTIONARY);
+        if (dictionary != null) out.putLong(dictionary.fingerprint());
+
+        cart.forEachItem((name, item) -> {
+            int id = idOf(dictionary, name, item);
+
+            if (id == ProductDictionary.NOT_FOUND) {
+                putVarint(out, INLINE);
+                putString(out, name);
+                if (name.equals(item.title())) putVarint(out, 0);
+                else putString(out, item.title());
+            } else {
+                putVarint(out, FIRST_ID + (long) id);
+            }
+            putVarint(out, item.price().cents());
+            putVarint(out, item.quantity());
+        });
+
+        putVarint(out, END);
+    }
+
+    public static Cart decode(ByteBuffer in, ProductService productService) {
+        return decode(in, productService, null);
+    }
+
+    /**
+     * Reads a cart from the buffer's position. Items are restored at their
+     * encoded prices without catalog lookups. A cart encoded with a dictionary
+     * must be decoded with the same one.
+     */
+    public static Cart decode(ByteBuffer in, ProductService productService, ProductDictionary dictionary) {
+        Cart cart = new Cart(productService);
+        decodeInto(in, cart, dictionary);
+        return cart;
+    }
+
+    /**
+     * Reads a cart from the buffer's position, restoring its items into the given
+     * cart, e.g. one made with the TaxCalculator the encoded cart had.
+     */
+    public static void decodeInto(ByteBuffer in, Cart cart, ProductDictionary dictionary) {
+        Objects.requireNonNull(in, "ByteBuffer is invalid.");
+        Objects.requireNonNull(cart, "Cart is invalid.");
+
+        byte version = in.get();
+        if (version != VERSION) throw new IllegalArgumentException("Unsupported cart encoding version " + version + ".");
+
+        boolean usesDictionary = (in.get() & DICTIONARY) != 0;
+        if (usesDictionary) {
+            long fingerprint = in.getLong();
+            if (dictionary == null || dictionary.fingerprint() != fingerprint)
+                throw new IllegalArgumentException("Cart was encoded with a different product dictionary.");
+        }
+
+        for (long reference = getVarint(in); reference != END; reference = getVarint(in)) {
+            String name;
+            String title;
+
+            if (reference == INLINE) {
+                name = getString(in);
+                title = getString(in);
+                if (title.isEmpty()) title = name;
+            } else {
+                if (!usesDictionary) throw new IllegalArgumentException("Cart refers to a product dictionary it was not encoded with.");
+                int id = Math.toIntExact(reference - FIRST_ID);
+                name = dictionary.productNameOf(id);
+                title = dictionary.titleOf(id);
+            }
+
+            Money price = Money.ofCents(getVarint(in));
+            int quantity = Math.toIntExact(getVarint(in));
+
+            cart.restore(name, new Item(ProductRegistry.productOf(title, price), quantity));
+        }
+    }
+
+    private static int idOf(ProductDictionary dictionary, String name, Item item) {
+        if (dictionary == null) return ProductDictionary.NOT_FOUND;
+
+        int id = dictionary.idOf(name);
+        if (id == ProductDictionary.NOT_FOUND || !dictionary.titleOf(id).equals(item.title())) return ProductDictionary.NOT_FOUND;
+
+        return id;
+    }
+
+    private static int titleSize(String name, Item item) {
+        return name.equals(item.title()) ? varintSize(0) : stringSize(item.title());
+    }
+
+    static int varintSize(long value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) size++;
+        return size;
+    }
+
+    static void putVarint(ByteBuffer out, long value) {
+        if (value < 0) throw new IllegalArgumentException("Cannot encode a negative value.");
+
+        while ((value & ~0x7fL) != 0) {
+            out.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static long getVarint(ByteBuffer in) {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) return value;
+        }
+
+        throw new IllegalArgumentException("Malformed varint.");
+    }
+
+    private static int stringSize(String value) {
+        int length = utf8Length(value);
+        return varintSize(length) + length;
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        putVarint(out, utf8Length(value));
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xc0 | (c >> 6))).put((byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out.put((byte) (0xf0 | (codePoint >> 18)))
+                        .put((byte) (0x80 | ((codePoint >> 12) & 0x3f)))
+                        .put((byte) (0x80 | ((codePoint >> 6) & 0x3f)))
+                        .put((byte) (0x80 | (codePoint & 0x3f)));
+            } else if (Character.isSurrogate(c)) {
+                out.put((byte) '?');
+            } else {
+                out.put((byte) (0xe0 | (c >> 12))).put((byte) (0x80 | ((c >> 6) & 0x3f))).put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c < 0x80) length += 1;
+            else if (c < 0x800) length += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) length += 1;
+            else length += 3;
+        }
+
+        return length;
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = Math.toIntExact(getVarint(in));
+        if (length > in.remaining()) throw new IllegalArgumentException("Malformed string.");
+
+        if (in.hasArray()) {
+            String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return value;
+        }
+
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,42 @@
+package com.changent.entities;
+
+import com.changent.valueobjects.Money;
+
+/**
+ * Observes changes to a cart's items.
+ * Listeners are called while the changed product is locked, so changes to one
+ * product are seen in the order they were made. A listener must be quick and
+ * must not change the items of the cart it is called for, though it may apply
+ * discounts. If a listener throws, the change is not made.
+ */
+public interface CartListener {
+    /**
+     * The quantity was added to the product; line is the product's item after the change.
+     */
+    void added(Cart cart, String productName, Item line, int quantity);
+
+    /**
+     * The quantity was removed from the product; line is the product's item after
+     * the change, with a quantity of zero if it is no longer in the cart. The quantity
+     * is what was actually removed, which is less than requested if the cart held less.
+     */
+    void removed(Cart cart, String productName, Item line, int quantity);
+
+    /**
+     * The product's line was moved to a new price; line is its item at that price.
+     */
+    default void repriced(Cart cart, String productName, Item line, Money previousPrice) {
+    }
+
+    /**
+     * The product was not found, so nothing was added. No lock is held.
+     */
+    default void notFound(Cart cart, String productName) {
+    }
+
+    /**
+     * A quote was priced, rather than reused, taking the time given. No lock is held.
+     */
+    default void quoted(Cart cart, CartQuote quote, long elapsedNanos) {
+    }
+}
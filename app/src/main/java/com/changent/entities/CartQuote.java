@@ -0,0 +1,24 @@
+package com.changent.entities;
+
+import com.changent.valueobjects.Money;
+import com.changent.valueobjects.USDollar;
+
+import java.util.List;
+
+/**
+ * A priced view of a cart as of one version: its lines and the totals summed
+ * from those same lines, so the amounts always agree with each other.
+ *
+ * @param version    the cart's modification version the quote was taken at
+ * @param lines      the lines, ordered by product name
+ * @param discounts  the discount lines, ordered by promotion id, which the subtotal is net of
+ * @param itemCount  the quantities of all lines added up
+ */
+public record CartQuote(long version, List<Line> lines, List<Discount> discounts, int itemCount, USDollar subtotal, USDollar tax, USDollar total) {
+    public CartQuote {
+        lines = List.copyOf(lines);
+        discounts = List.copyOf(discounts);
+    }
+
+    public record Line(String productName, String title, Money unitPrice, int quantity, Money linePrice) {}
+}
@@ -0,0 +1,20 @@
+package com.changent.entities;
+
+import com.changent.valueobjects.Money;
+
+import java.util.Objects;
+
+/**
+ * A discount line of a cart: the amount a promotion takes off.
+ * The discount is taxed as a negative line of the title, so it lowers the tax
+ * at that product's rate.
+ */
+public record Discount(String promotionId, String title, Money amount) {
+    public Discount {
+        Objects.requireNonNull(promotionId, "Promotion id is invalid.");
+        Objects.requireNonNull(title, "Title is invalid.");
+        Objects.requireNonNull(amount, "Amount is invalid.");
+
+        if (amount.isNegative()) throw new IllegalArgumentException("Discount cannot be negative.");
+    }
+}
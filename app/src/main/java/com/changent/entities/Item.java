@@ -1,15 +1,14 @@
 package com.changent.entities;
 
+import com.changent.valueobjects.Money;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
-import javax.json.Json;
-import javax.json.JsonObject;
-import javax.json.JsonReader;
-import javax.json.JsonWriter;
 import java.io.IOException;
-import java.io.StringReader;
-import java.io.StringWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 public final class Item {
@@ -29,10 +28,22 @@ public final class Item {
         return product.title();
     }
 
+    Product product() {
+        return product;
+    }
+
     public Double unitPrice() {
         return product.unitPrice();
     }
 
+    public Money price() {
+        return product.price();
+    }
+
+    public Money linePrice() {
+        return product.price().times(quantity);
+    }
+
     public int quantity() {
         return quantity;
     }
@@ -96,35 +107,43 @@ public final class Item {
 
     @Contract("_ -> new")
     public static @NotNull Item fromJson(String json) {
-        StringReader stringReader = new StringReader(json);
-        JsonReader reader = Json.createReader(new StringReader(json));
-
-        JsonObject jsonObject = reader.readObject();
+        return JsonCodec.readObject(JsonCodec.parserOf(json)).item();
+    }
 
-        reader.close();
-        stringReader.close();
+    @Contract("_ -> new")
+    public static @NotNull Item fromJson(byte[] json) {
+        return JsonCodec.readObject(JsonCodec.parserOf(json)).item();
+    }
 
-        String title = jsonObject.getString("title");
-        double price = jsonObject.getJsonNumber("price").doubleValue();
-        int quantity = jsonObject.getJsonNumber("quantity").intValue();
+    @Contract("_ -> new")
+    public static @NotNull Item fromJson(InputStream json) {
+        return JsonCodec.readObject(JsonCodec.parserOf(json)).item();
+    }
 
-        return new Item(new Product(title, price), quantity);
+    /**
+     * Reads the remaining bytes of the buffer.
+     */
+    @Contract("_ -> new")
+    public static @NotNull Item fromJson(ByteBuffer json) {
+        return JsonCodec.readObject(JsonCodec.parserOf(json)).item();
     }
 
     public String toJson() throws IOException {
-        StringWriter stringWriter = new StringWriter();
-        JsonWriter jsonWriter = Json.createWriter(stringWriter);
-
-        JsonObject jsonObject = Json.createObjectBuilder()
-                .add("title", title())
-                .add("price", unitPrice())
-                .add("quantity", quantity())
-                .build();
-
-        jsonWriter.writeObject(jsonObject);
-        jsonWriter.close();
-        String json = stringWriter.toString();
-        stringWriter.close();
-        return json;
+        return new String(JsonOutput.buffer().item(this).toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the same UTF-8 JSON as toJson into the buffer, returning the number of bytes written.
+     * Throws BufferOverflowException, writing nothing, if the buffer has too little room.
+     */
+    public int writeJsonTo(ByteBuffer buffer) {
+        return JsonOutput.buffer().item(this).writeTo(buffer);
+    }
+
+    /**
+     * Writes the same UTF-8 JSON as toJson to the stream.
+     */
+    public void writeJsonTo(OutputStream out) throws IOException {
+        JsonOutput.buffer().item(this).writeTo(out);
     }
 }
@@ -0,0 +1,222 @@
+package com.changent.entities;
+
+import com.changent.valueobjects.Money;
+
+import javax.json.JsonException;
+import javax.json.spi.JsonProvider;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParserFactory;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * JSON reading and writing shared by Product, Item and Cart.
+ * The provider is looked up once, rather than through the ServiceLoader on
+ * every Json.createReader call, and objects are read with the event based
+ * parser so no JsonObject tree is built.
+ * Whole carts are streamed both ways by writeCart and readCart, an item at a
+ * time, so neither holds the document in memory.
+ */
+final class JsonCodec {
+    private JsonCodec() {}
+
+    static final JsonProvider PROVIDER = JsonProvider.provider();
+    static final JsonParserFactory PARSER_FACTORY = PROVIDER.createParserFactory(Map.of());
+    static final JsonGeneratorFactory GENERATOR_FACTORY = PROVIDER.createGeneratorFactory(Map.of());
+
+    static final int NO_QUANTITY = -1;
+
+    /**
+     * The fields of a product or item object, in whatever order they appear.
+     * Unknown fields are skipped.
+     */
+    static final class Fields {
+        String name;
+        String title;
+        Double price;
+        int quantity = NO_QUANTITY;
+
+        Product product() {
+            if (title == null) throw new JsonException("Missing title.");
+            if (price == null) throw new JsonException("Missing price.");
+
+            return ProductRegistry.canonical(new Product(title, price));
+        }
+
+        Item item() {
+            if (quantity == NO_QUANTITY) throw new JsonException("Missing quantity.");
+
+            return new Item(product(), quantity);
+        }
+    }
+
+    static JsonParser parserOf(String json) {
+        return PARSER_FACTORY.createParser(new StringReader(json));
+    }
+
+    static JsonParser parserOf(byte[] json) {
+        return PARSER_FACTORY.createParser(new ByteArrayInputStream(json));
+    }
+
+    static JsonParser parserOf(InputStream json) {
+        return PARSER_FACTORY.createParser(json);
+    }
+
+    /**
+     * Parses the remaining bytes of the buffer, leaving its position at its limit.
+     */
+    static JsonParser parserOf(ByteBuffer json) {
+        if (json.hasArray()) {
+            InputStream bytes = new ByteArrayInputStream(json.array(), json.arrayOffset() + json.position(), json.remaining());
+            json.position(json.limit());
+            return PARSER_FACTORY.createParser(bytes);
+        }
+
+        return PARSER_FACTORY.createParser(new ByteBufferInputStream(json));
+    }
+
+    static Fields readObject(JsonParser parser) {
+        try (parser) {
+            if (parser.next() != JsonParser.Event.START_OBJECT) throw new JsonException("Expected an object.");
+
+            return readFields(parser);
+        }
+    }
+
+    /**
+     * Reads the fields of an object whose START_OBJECT has just been consumed,
+     * up to and including its END_OBJECT.
+     */
+    static Fields readFields(JsonParser parser) {
+        Fields fields = new Fields();
+
+        for (JsonParser.Event event = parser.next(); event != JsonParser.Event.END_OBJECT; event = parser.next()) {
+            String key = parser.getString();
+            JsonParser.Event value = parser.next();
+
+            switch (key) {
+                case "product" -> {
+                    expect(value, JsonParser.Event.VALUE_STRING, key);
+                    fields.name = parser.getString();
+                }
+                case "title" -> {
+                    expect(value, JsonParser.Event.VALUE_STRING, key);
+                    fields.title = parser.getString();
+                }
+                case "price" -> {
+                    expect(value, JsonParser.Event.VALUE_NUMBER, key);
+                    fields.price = parser.getBigDecimal().doubleValue();
+                }
+                case "quantity" -> {
+                    expect(value, JsonParser.Event.VALUE_NUMBER, key);
+                    if (!parser.isIntegralNumber()) throw new JsonException("Quantity must be a whole number.");
+                    fields.quantity = parser.getInt();
+                }
+                default -> skip(parser, value);
+            }
+        }
+
+        return fields;
+    }
+
+    /**
+     * Streams the cart as
+     * {"items":[{"product":"cornflakes","title":"Corn Flakes","price":2.52,"quantity":2}],
+     * "totalProductCount":2,"subtotal":5.04,"tax":0.63,"total":5.67}
+     * where product is the name the item was added by. The stream is flushed, not closed.
+     * The totals are read after the items are written, so if the cart is changed
+     * meanwhile they need not add up to the items in the document.
+     */
+    static void writeCart(Cart cart, OutputStream out) {
+        JsonGenerator generator = GENERATOR_FACTORY.createGenerator(out, StandardCharsets.UTF_8);
+
+        generator.writeStartObject().writeStartArray("items");
+        cart.forEachItem((name, item) -> generator.writeStartObject()
+                .write("product", name)
+                .write("title", item.title())
+                .write("price", decimalOf(item.price()))
+                .write("quantity", item.quantity())
+                .writeEnd());
+        generator.writeEnd()
+                .write("totalProductCount", cart.getTotalProductCount())
+                .write("subtotal", cart.getSubtotal().get())
+                .write("tax", cart.getTaxPayable().get())
+                .write("total", cart.getTotalPayable().get())
+                .writeEnd()
+                .flush();
+    }
+
+    /**
+     * Adds the items of a document written by writeCart to the cart, at their
+     * recorded prices. The totals in the document are not read; the cart computes
+     * its own. The stream is not closed.
+     */
+    static void readCart(InputStream in, Cart cart) {
+        JsonParser parser = PARSER_FACTORY.createParser(in);
+
+        if (parser.next() != JsonParser.Event.START_OBJECT) throw new JsonException("Expected an object.");
+
+        for (JsonParser.Event event = parser.next(); event != JsonParser.Event.END_OBJECT; event = parser.next()) {
+            String key = parser.getString();
+            JsonParser.Event value = parser.next();
+
+            if (!key.equals("items")) {
+                skip(parser, value);
+                continue;
+            }
+
+            expect(value, JsonParser.Event.START_ARRAY, key);
+            for (JsonParser.Event item = parser.next(); item != JsonParser.Event.END_ARRAY; item = parser.next()) {
+                expect(item, JsonParser.Event.START_OBJECT, key);
+
+                Fields fields = readFields(parser);
+                Item restored = fields.item();
+                cart.restore(fields.name == null ? restored.title() : fields.name, restored);
+            }
+        }
+    }
+
+    private static BigDecimal decimalOf(Money price) {
+        return BigDecimal.valueOf(price.cents(), 2);
+    }
+
+    static void skip(JsonParser parser, JsonParser.Event value) {
+        if (value == JsonParser.Event.START_OBJECT) parser.skipObject();
+        if (value == JsonParser.Event.START_ARRAY) parser.skipArray();
+    }
+
+    private static void expect(JsonParser.Event actual, JsonParser.Event expected, String key) {
+        if (actual != expected) throw new JsonException("Unexpected " + actual + " for " + key + ".");
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private final ByteBuffer buffer;
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
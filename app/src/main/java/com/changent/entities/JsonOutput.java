@@ -0,0 +1,210 @@
+package com.changent.entities;
+
+import com.changent.valueobjects.Money;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Writes Product and Item JSON as UTF-8 bytes straight into a reusable,
+ * per thread buffer. The output is byte for byte what the javax.json
+ * writer produced for Item.toJson: no whitespace, the same string escapes
+ * and numbers formatted as the JsonNumber of a double.
+ */
+final class JsonOutput {
+    private JsonOutput() {}
+
+    private static final int INITIAL_CAPACITY = 256;
+    // A buffer grown past this, by a very long title, is not kept for reuse.
+    private static final int RETAINED_CAPACITY = 16 * 1024;
+
+    private static final ThreadLocal<JsonOutput> BUFFERS = ThreadLocal.withInitial(JsonOutput::new);
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private byte[] bytes = new byte[INITIAL_CAPACITY];
+    private int length;
+
+    static JsonOutput buffer() {
+        JsonOutput output = BUFFERS.get();
+        if (output.bytes.length > RETAINED_CAPACITY) output.bytes = new byte[INITIAL_CAPACITY];
+        output.length = 0;
+
+        return output;
+    }
+
+    JsonOutput product(Product product) {
+        ascii("{\"title\":");
+        string(product.title());
+        ascii(",\"price\":");
+        price(product.price());
+        return ascii("}");
+    }
+
+    JsonOutput item(Item item) {
+        ascii("{\"title\":");
+        string(item.title());
+        ascii(",\"price\":");
+        price(item.price());
+        ascii(",\"quantity\":");
+        number(item.quantity());
+        return ascii("}");
+    }
+
+    /**
+     * Copies the JSON into the buffer, or throws BufferOverflowException,
+     * leaving the buffer untouched, if it does not fit.
+     */
+    int writeTo(ByteBuffer buffer) {
+        if (buffer.remaining() < length) throw new BufferOverflowException();
+
+        buffer.put(bytes, 0, length);
+        return length;
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, length);
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    JsonOutput ascii(String value) {
+        ensureCapacity(value.length());
+
+        for (int i = 0; i < value.length(); i++) {
+            bytes[length++] = (byte) value.charAt(i);
+        }
+
+        return this;
+    }
+
+    JsonOutput string(String value) {
+        // worst case: every char is a six byte \\u escape
+        ensureCapacity(value.length() * 6 + 2);
+        bytes[length++] = '"';
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                bytes[length++] = (byte) c;
+            } else if (c >= 0x80) {
+                i = utf8(value, i);
+            } else {
+                escape(c);
+            }
+        }
+
+        bytes[length++] = '"';
+        return this;
+    }
+
+    JsonOutput number(long value) {
+        if (value < 0) return ascii(Long.toString(value));
+
+        int digits = 1;
+        for (long remaining = value / 10; remaining > 0; remaining /= 10) digits++;
+
+        ensureCapacity(digits);
+        for (int i = length + digits - 1; i >= length; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+
+        return this;
+    }
+
+    /**
+     * Formats the price as BigDecimal.valueOf(double).toString() does,
+     * which is how javax.json writes a double, without creating either.
+     */
+    JsonOutput price(Money price) {
+        long cents = price.cents();
+
+        if (cents < 0 || cents >= 1_000_000_000) {
+            return ascii(BigDecimal.valueOf(price.doubleValue()).toString());
+        }
+
+        number(cents / 100);
+        ensureCapacity(3);
+        bytes[length++] = '.';
+
+        int fraction = (int) (cents % 100);
+        if (fraction % 10 == 0) {
+            bytes[length++] = (byte) ('0' + fraction / 10);
+        } else {
+            bytes[length++] = (byte) ('0' + fraction / 10);
+            bytes[length++] = (byte) ('0' + fraction % 10);
+        }
+
+        return this;
+    }
+
+    private void escape(char c) {
+        bytes[length++] = '\\';
+
+        switch (c) {
+            case '"' -> bytes[length++] = '"';
+            case '\\' -> bytes[length++] = '\\';
+            case '\b' -> bytes[length++] = 'b';
+            case '\f' -> bytes[length++] = 'f';
+            case '\n' -> bytes[length++] = 'n';
+            case '\r' -> bytes[length++] = 'r';
+            case '\t' -> bytes[length++] = 't';
+            default -> {
+                bytes[length++] = 'u';
+                bytes[length++] = '0';
+                bytes[length++] = '0';
+                bytes[length++] = HEX[(c >> 4) & 0xf];
+                bytes[length++] = HEX[c & 0xf];
+            }
+        }
+    }
+
+    /**
+     * Encodes the non ASCII char at index, and its low surrogate if it starts a pair.
+     * Returns the index of the last char consumed. An unpaired surrogate is written
+     * as '?', as the JDK UTF-8 encoder does.
+     */
+    private int utf8(String value, int index) {
+        char c = value.charAt(index);
+
+        if (c < 0x800) {
+            bytes[length++] = (byte) (0xc0 | (c >> 6));
+            bytes[length++] = (byte) (0x80 | (c & 0x3f));
+            return index;
+        }
+
+        if (!Character.isSurrogate(c)) {
+            bytes[length++] = (byte) (0xe0 | (c >> 12));
+            bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            bytes[length++] = (byte) (0x80 | (c & 0x3f));
+            return index;
+        }
+
+        if (Character.isHighSurrogate(c) && index + 1 < value.length() && Character.isLowSurrogate(value.charAt(index + 1))) {
+            int codePoint = Character.toCodePoint(c, value.charAt(index + 1));
+            bytes[length++] = (byte) (0xf0 | (codePoint >> 18));
+            bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+            bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+            bytes[length++] = (byte) (0x80 | (codePoint & 0x3f));
+            return index + 1;
+        }
+
+        bytes[length++] = '?';
+        return index;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (length + additional > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + additional));
+        }
+    }
+}
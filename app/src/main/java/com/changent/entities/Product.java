@@ -1,30 +1,47 @@
 package com.changent.entities;
 
+import com.changent.tracing.Tracing;
+import com.changent.valueobjects.Money;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
-import javax.json.Json;
-import javax.json.JsonObject;
-import javax.json.JsonReader;
-import java.io.StringReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
-import java.util.logging.Logger;
 
 
 public final class Product {
     public Product(String title, Double unitPrice) {
-        logger.info("Product(title: " + title + ", unitPrice: " + unitPrice);
+        this(title, priceOf(unitPrice));
+    }
+
+    public Product(String title, Money price) {
         Objects.requireNonNull(title, "Title is invalid.");
-        Objects.requireNonNull(unitPrice, "Price is invalid.");
+        Objects.requireNonNull(price, "Price is invalid.");
 
         if (title.isBlank()) throw new IllegalArgumentException("Title is invalid.");
-        if (isNegative(unitPrice)) throw new IllegalArgumentException("Price is invalid.");
+        if (price.isNegative()) throw new IllegalArgumentException("Price is invalid.");
 
         this.title = title;
-        this.unitPrice = unitPrice;
+        this.price = price;
+
+        Tracing.productCreated(title, price.cents());
     }
 
-    private static final Logger logger = Logger.getLogger("Product");
+    private static Money priceOf(Double unitPrice) {
+        Objects.requireNonNull(unitPrice, "Price is invalid.");
+
+        if (isNegative(unitPrice)) throw new IllegalArgumentException("Price is invalid.");
+
+        try {
+            return Money.of(unitPrice);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Price is invalid.");
+        }
+    }
 
     @Contract(pure = true)
     private static boolean isNegative(Double unitPrice) {
@@ -32,15 +49,19 @@ public final class Product {
     }
 
     private final String title;
-    private final Double unitPrice;
+    private final Money price;
 
 
     public String title() {
         return title;
     }
 
+    public Money price() {
+        return price;
+    }
+
     public Double unitPrice() {
-        return unitPrice;
+        return price.doubleValue();
     }
 
     @Override
@@ -48,12 +69,12 @@ public final class Product {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Product product = (Product) o;
-        return title.equals(product.title) && unitPrice.equals(product.unitPrice);
+        return title.equals(product.title) && price.equals(product.price);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(title, unitPrice);
+        return Objects.hash(title, price);
     }
 
     @Contract(pure = true)
@@ -61,23 +82,54 @@ public final class Product {
     public @NotNull String toString() {
         return "Product{" +
                 "title='" + title + '\'' +
-                ", unitPrice=" + unitPrice +
+                ", unitPrice=" + unitPrice() +
                 '}';
     }
 
-    @Contract("_ -> new")
-    public static @NotNull Product fromJson(String json) {
-        StringReader stringReader = new StringReader(json);
-        JsonReader reader = Json.createReader(new StringReader(json));
+    public String toJson() {
+        return new String(JsonOutput.buffer().product(this).toByteArray(), StandardCharsets.UTF_8);
+    }
 
-        JsonObject jsonObject = reader.readObject();
+    /**
+     * Writes the same UTF-8 JSON as toJson into the buffer, returning the number of bytes written.
+     * Throws BufferOverflowException, writing nothing, if the buffer has too little room.
+     */
+    public int writeJsonTo(ByteBuffer buffer) {
+        return JsonOutput.buffer().product(this).writeTo(buffer);
+    }
 
-        reader.close();
-        stringReader.close();
+    public void writeJsonTo(OutputStream out) throws IOException {
+        JsonOutput.buffer().product(this).writeTo(out);
+    }
 
-        String title = jsonObject.getString("title");
-        double price = jsonObject.getJsonNumber("price").doubleValue();
+    /**
+     * Reads a product object such as {"title": "Cheerios", "price": 8.43}.
+     * Other fields are ignored.
+     * Returns the canonical instance of the product, see ProductRegistry.
+     */
+    public static @NotNull Product fromJson(String json) {
+        return JsonCodec.readObject(JsonCodec.parserOf(json)).product();
+    }
+
+    /**
+     * As fromJson(String), reading the bytes without first copying them into a String.
+     * The character encoding is detected from the bytes.
+     */
+    public static @NotNull Product fromJson(byte[] json) {
+        return JsonCodec.readObject(JsonCodec.parserOf(json)).product();
+    }
+
+    /**
+     * As fromJson(byte[]). The stream is read to the end of the object and closed.
+     */
+    public static @NotNull Product fromJson(InputStream json) {
+        return JsonCodec.readObject(JsonCodec.parserOf(json)).product();
+    }
 
-        return new Product(title, price);
+    /**
+     * As fromJson(byte[]), reading the remaining bytes of the buffer.
+     */
+    public static @NotNull Product fromJson(ByteBuffer json) {
+        return JsonCodec.readObject(JsonCodec.parserOf(json)).product();
     }
 }
@@ -0,0 +1,26 @@
+package com.changent.entities;
+
+/**
+ * Numbers products so encodings can refer to a product by id
+ * instead of spelling out its name and title.
+ * Ids are only meaningful to the dictionary that issued them, which is
+ * identified by its fingerprint.
+ */
+public interface ProductDictionary {
+    int NOT_FOUND = -1;
+
+    /**
+     * Returns the id of the product, or NOT_FOUND.
+     */
+    int idOf(String productName);
+
+    String productNameOf(int id);
+
+    String titleOf(int id);
+
+    /**
+     * Changes whenever the ids issued by the dictionary change, or the names
+     * and titles they stand for, or the prices of those products.
+     */
+    long fingerprint();
+}
@@ -0,0 +1,27 @@
+package com.changent.entities;
+
+import com.changent.valueobjects.Money;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Canonical Product instances, one per title and price.
+ * Carts holding the same product then share one instance instead of each
+ * holding a copy. Instances are weakly referenced, so a product no cart
+ * refers to any more can be garbage collected, and a price change simply
+ * yields a new canonical instance.
+ */
+public final class ProductRegistry {
+    private ProductRegistry() {}
+
+    private static final Interner<Product> PRODUCTS = Interners.newWeakInterner();
+
+    public static @NotNull Product canonical(@NotNull Product product) {
+        return PRODUCTS.intern(product);
+    }
+
+    public static @NotNull Product productOf(String title, Money price) {
+        return canonical(new Product(title, price));
+    }
+}
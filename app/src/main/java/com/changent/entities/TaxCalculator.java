@@ -0,0 +1,53 @@
+package com.changent.entities;
+
+import com.changent.valueobjects.Money;
+
+/**
+ * Supplies the tax rate of each line of a cart and how tax is rounded.
+ * Rates are whole millionths, e.g. 12.5% is 125_000.
+ */
+public interface TaxCalculator {
+    long rateInMillionths(String title);
+
+    TaxRounding rounding();
+
+    /**
+     * A single rate for every product, rounded per invoice.
+     */
+    static TaxCalculator flat(long rateInMillionths) {
+        if (rateInMillionths < 0) throw new IllegalArgumentException("Tax rate is invalid.");
+
+        return new TaxCalculator() {
+            @Override
+            public long rateInMillionths(String title) {
+                return rateInMillionths;
+            }
+
+            @Override
+            public TaxRounding rounding() {
+                return TaxRounding.PER_INVOICE;
+            }
+        };
+    }
+
+    /**
+     * The tax on the first lineCount lines, given as parallel arrays, in cents.
+     */
+    default long taxInCents(String[] titles, long[] lineCents, int lineCount) {
+        long wholeCents = 0;
+        long millionths = 0;
+
+        for (int i = 0; i < lineCount; i++) {
+            long rate = rateInMillionths(titles[i]);
+
+            if (rounding() == TaxRounding.PER_LINE) {
+                wholeCents = Math.addExact(wholeCents, Money.multiplyUsingBankersRounding(lineCents[i], rate));
+            } else {
+                wholeCents = Math.addExact(wholeCents, Money.multiplyRoundingDown(lineCents[i], rate));
+                millionths += Money.remainderOfMultiply(lineCents[i], rate);
+            }
+        }
+
+        return Money.roundUsingBankersRounding(wholeCents, millionths);
+    }
+}
@@ -0,0 +1,16 @@
+package com.changent.entities;
+
+/**
+ * Where tax is rounded to whole cents, half to even.
+ */
+public enum TaxRounding {
+    /**
+     * Each line's tax is rounded, then the rounded amounts are added up.
+     */
+    PER_LINE,
+
+    /**
+     * The exact tax of every line is added up and the sum rounded once.
+     */
+    PER_INVOICE
+}
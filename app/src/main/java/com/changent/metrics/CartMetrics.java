@@ -0,0 +1,73 @@
+package com.changent.metrics;
+
+import com.changent.entities.Cart;
+import com.changent.entities.CartListener;
+import com.changent.entities.CartQuote;
+import com.changent.entities.Item;
+import com.changent.valueobjects.Money;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the changes made to the carts it listens to, the products they could
+ * not find, and how long their quotes take. One instance may listen to any
+ * number of carts.
+ * <p>
+ * The cart's item count is recorded at each change, so busy carts weigh more in
+ * its distribution; under concurrent changes to one cart it is approximate.
+ */
+public class CartMetrics implements CartListener {
+    public static final String ADDED = "cart.added";
+    public static final String REMOVED = "cart.removed";
+    public static final String REPRICED = "cart.repriced";
+    public static final String NOT_FOUND = "cart.notFound";
+    public static final String ITEM_COUNT = "cart.itemCount";
+    public static final String QUOTE_NANOS = "cart.quote.nanos";
+
+    public CartMetrics(MetricsRegistry registry) {
+        Objects.requireNonNull(registry, "MetricsRegistry is invalid.");
+
+        this.added = registry.counter(ADDED);
+        this.removed = registry.counter(REMOVED);
+        this.repriced = registry.counter(REPRICED);
+        this.notFound = registry.counter(NOT_FOUND);
+        this.itemCount = registry.histogram(ITEM_COUNT);
+        this.quoteNanos = registry.histogram(QUOTE_NANOS);
+    }
+
+    private final LongAdder added;
+    private final LongAdder removed;
+    private final LongAdder repriced;
+    private final LongAdder notFound;
+    private final Histogram itemCount;
+    private final Histogram quoteNanos;
+
+    @Override
+    public void added(Cart cart, String productName, Item line, int quantity) {
+        added.increment();
+        // Called before the cart's totals include the change.
+        itemCount.record(Math.max(0, cart.getTotalProductCount() + quantity));
+    }
+
+    @Override
+    public void removed(Cart cart, String productName, Item line, int quantity) {
+        removed.increment();
+        itemCount.record(Math.max(0, cart.getTotalProductCount() - quantity));
+    }
+
+    @Override
+    public void repriced(Cart cart, String productName, Item line, Money previousPrice) {
+        repriced.increment();
+    }
+
+    @Override
+    public void notFound(Cart cart, String productName) {
+        notFound.increment();
+    }
+
+    @Override
+    public void quoted(Cart cart, CartQuote quote, long elapsedNanos) {
+        quoteNanos.record(elapsedNanos);
+    }
+}
@@ -0,0 +1,114 @@
+package com.changent.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts non-negative values, e.g. latencies in nanoseconds, in log-linear buckets
+ * as HdrHistogram does: each power of two is split into 32 buckets, so a value is
+ * reported within about 3% of what was recorded, over the whole range of a long,
+ * in a fixed 15KB. Recording is lock free: one bucket increment, an adder and,
+ * rarely, a compare and set of the maximum.
+ */
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values below 64 have a bucket each; above, each power of two up to 2^63 has 32.
+    static final int BUCKET_COUNT = (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) throw new IllegalArgumentException("Value cannot be negative.");
+
+        buckets.incrementAndGet(bucketOf(value));
+        sum.add(value);
+
+        for (long current = max.get(); value > current; current = max.get()) {
+            if (max.compareAndSet(current, value)) break;
+        }
+    }
+
+    /**
+     * The counts as of now. Values recorded meanwhile may be partly seen.
+     */
+    public HistogramSnapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+
+        long highest = max.get();
+        return new HistogramSnapshot(
+                count,
+                sum.sum(),
+                valueAt(counts, count, 0.50, highest),
+                valueAt(counts, count, 0.90, highest),
+                valueAt(counts, count, 0.99, highest),
+                valueAt(counts, count, 0.999, highest),
+                highest
+        );
+    }
+
+    /**
+     * The value at or below which the percentile of values fall, e.g. 99.0, as of now.
+     */
+    public long valueAtPercentile(double percentile) {
+        if (!(percentile > 0 && percentile <= 100)) throw new IllegalArgumentException("Percentile is invalid.");
+
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+
+        return valueAt(counts, count, percentile / 100, max.get());
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) buckets.set(i, 0);
+        sum.reset();
+        max.set(0);
+    }
+
+    static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKETS) return (int) value;
+
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - 1 - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * The highest value that falls in the bucket.
+     */
+    static long highestValueIn(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) return bucket;
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowest + ((1L << shift) - 1);
+    }
+
+    /**
+     * The value at or below which the fraction of values fall, to the bucket's
+     * precision and never above the largest value recorded.
+     */
+    private static long valueAt(long[] counts, long count, double fraction, long highest) {
+        if (count == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(count * fraction));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(highestValueIn(i), highest);
+        }
+
+        return highest;
+    }
+}
@@ -0,0 +1,13 @@
+package com.changent.metrics;
+
+/**
+ * A histogram's counts at one moment, with the percentiles read from them.
+ * Percentiles are within the histogram's precision of the recorded values.
+ */
+public record HistogramSnapshot(long count, long sum, long p50, long p90, long p99, long p999, long max) {
+    public static final HistogramSnapshot EMPTY = new HistogramSnapshot(0, 0, 0, 0, 0, 0, 0);
+
+    public double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+}
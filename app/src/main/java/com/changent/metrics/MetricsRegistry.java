@@ -0,0 +1,57 @@
+package com.changent.metrics;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named counters and histograms, read with a snapshot when they are wanted.
+ * Look a metric up once and keep it; updating it is then lock free and costs
+ * no lookup.
+ */
+public class MetricsRegistry {
+    public MetricsRegistry() {
+        this(Clock.systemUTC());
+    }
+
+    public MetricsRegistry(Clock clock) {
+        Objects.requireNonNull(clock, "Clock is invalid.");
+
+        this.clock = clock;
+    }
+
+    private final Clock clock;
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * The counter with the name, created on first use.
+     */
+    public LongAdder counter(String name) {
+        Objects.requireNonNull(name, "Name is invalid.");
+
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * The histogram with the name, created on first use.
+     */
+    public Histogram histogram(String name) {
+        Objects.requireNonNull(name, "Name is invalid.");
+
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    public MetricsSnapshot snapshot() {
+        Map<String, Long> counterValues = new HashMap<>();
+        counters.forEach((name, counter) -> counterValues.put(name, counter.sum()));
+
+        Map<String, HistogramSnapshot> histogramValues = new HashMap<>();
+        histograms.forEach((name, histogram) -> histogramValues.put(name, histogram.snapshot()));
+
+        return new MetricsSnapshot(clock.instant(), counterValues, histogramValues);
+    }
+}
@@ -0,0 +1,25 @@
+package com.changent.metrics;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * The counters and histograms of a registry at one moment, by name.
+ */
+public record MetricsSnapshot(Instant takenAt, Map<String, Long> counters, Map<String, HistogramSnapshot> histograms) {
+    public MetricsSnapshot {
+        counters = Map.copyOf(counters);
+        histograms = Map.copyOf(histograms);
+    }
+
+    /**
+     * The counter's value, or zero if nothing was counted under the name.
+     */
+    public long counter(String name) {
+        return counters.getOrDefault(name, 0L);
+    }
+
+    public HistogramSnapshot histogram(String name) {
+        return histograms.getOrDefault(name, HistogramSnapshot.EMPTY);
+    }
+}
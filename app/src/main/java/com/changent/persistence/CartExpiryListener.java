@@ -0,0 +1,15 @@
+package com.changent.persistence;
+
+import com.changent.entities.Cart;
+
+/**
+ * Told of carts evicted for being idle, e.g. to persist them or to report them as abandoned.
+ */
+@FunctionalInterface
+public interface CartExpiryListener {
+    /**
+     * The cart with the id has expired. It has already been evicted, so saving it
+     * elsewhere is up to the listener.
+     */
+    void expired(long cartId, Cart cart);
+}
@@ -0,0 +1,411 @@
+package com.changent.persistence;
+
+import com.changent.entities.Cart;
+import com.changent.entities.CartListener;
+import com.changent.entities.Item;
+import com.changent.entities.TaxCalculator;
+import com.changent.services.ProductService;
+import com.changent.valueobjects.Money;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Keeps carts durable by logging each change, rather than rewriting the cart.
+ * <p>
+ * Every add, remove and reprice is appended as a small record to a memory mapped
+ * segment file, which costs a copy into the mapping. A background thread
+ * flushes the segment to disk every commit interval, so one fsync covers all
+ * the changes made in that interval (group commit); sync() flushes at once.
+ * When a segment fills up the journal moves on to the next, which is created
+ * ahead of time, so changes are not held up by a file being created or the
+ * full one being flushed; both happen in the background. The full
+ * segments are folded into a snapshot of the carts in the background and
+ * deleted. Opening a journal loads the snapshot and replays only the segments
+ * written since.
+ * <p>
+ * Carts, whether new or recovered, are made with the journal's TaxCalculator,
+ * which is not journaled.
+ * <p>
+ * A change is on disk at most one commit interval after it is made, or
+ * once sync() returns. Once a background commit or compaction fails, changes
+ * are no longer accepted: cart() and every change to a journaled cart throw
+ * UncheckedIOException, rather than carry on without being made durable.
+ */
+public final class CartJournal implements Closeable {
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    public static final Duration DEFAULT_COMMIT_INTERVAL = Duration.ofMillis(5);
+
+    static final int MIN_SEGMENT_SIZE = 4096;
+
+    private static final byte[] NO_NAME = new byte[0];
+
+    private CartJournal(Path directory, ProductService productService, TaxCalculator taxCalculator, int segmentSize, Duration commitInterval) {
+        this.directory = directory;
+        this.productService = productService;
+        this.taxCalculator = taxCalculator;
+        this.segmentSize = segmentSize;
+        this.commitIntervalNanos = commitInterval.toNanos();
+    }
+
+    private final Path directory;
+    private final ProductService productService;
+    private final TaxCalculator taxCalculator;
+    private final int segmentSize;
+    private final long commitIntervalNanos;
+
+    private final ConcurrentHashMap<Long, Journaled> carts = new ConcurrentHashMap<>();
+
+    // Guarded by this. The segment being appended to, and the one being created to follow it.
+    private JournalSegment segment;
+    private Future<JournalSegment> nextSegment;
+    // Segments rolled away from that are not yet flushed. Not guarded by this, since the
+    // preparer, which a roll may wait for, updates it.
+    private final Queue<JournalSegment> retired = new ConcurrentLinkedQueue<>();
+
+    private final Object compactionLock = new Object();
+
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "cart-journal-compactor"));
+    private final ExecutorService preparer = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "cart-journal-preparer"));
+    private Thread committer;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    private final AtomicLong appends = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+
+    public static CartJournal open(Path directory, ProductService productService) throws IOException {
+        return open(directory, productService, DEFAULT_SEGMENT_SIZE, DEFAULT_COMMIT_INTERVAL);
+    }
+
+    public static CartJournal open(Path directory, ProductService productService, int segmentSize, Duration commitInterval) throws IOException {
+        return open(directory, productService, Cart.DEFAULT_TAX, segmentSize, commitInterval);
+    }
+
+    /**
+     * Opens the journal in the directory, creating it if need be, and recovers its carts.
+     */
+    public static CartJournal open(Path directory, ProductService productService, TaxCalculator taxCalculator, int segmentSize, Duration commitInterval) throws IOException {
+        Objects.requireNonNull(directory, "Directory is invalid.");
+        Objects.requireNonNull(productService, "ProductService is invalid.");
+        Objects.requireNonNull(taxCalculator, "TaxCalculator is invalid.");
+        Objects.requireNonNull(commitInterval, "Commit interval is invalid.");
+
+        if (segmentSize < MIN_SEGMENT_SIZE) throw new IllegalArgumentException("Segment size is invalid.");
+        if (commitInterval.isNegative() || commitInterval.isZero()) throw new IllegalArgumentException("Commit interval is invalid.");
+
+        Files.createDirectories(directory);
+
+        CartJournal journal = new CartJournal(directory, productService, taxCalculator, segmentSize, commitInterval);
+        journal.recover();
+        return journal;
+    }
+
+    private void recover() throws IOException {
+        Map<Long, Cart> recovered = new HashMap<>();
+        long snapshotGeneration = JournalSnapshot.read(directory, recovered, this::newCart);
+        long nextGeneration = snapshotGeneration;
+
+        for (long generation : segmentGenerations()) {
+            Path file = directory.resolve(JournalSegment.fileNameOf(generation));
+
+            if (generation < snapshotGeneration) {
+                Files.delete(file);
+            } else {
+                JournalSegment.replay(file, recovered, this::newCart);
+                nextGeneration = generation + 1;
+            }
+        }
+
+        recovered.forEach((cartId, cart) -> carts.put(cartId, new Journaled(cartId, cart)));
+        segment = JournalSegment.create(directory, nextGeneration, segmentSize);
+        prepareSegment(nextGeneration + 1);
+
+        if (nextGeneration > snapshotGeneration) compactInBackground(nextGeneration);
+
+        committer = daemon(this::commitPeriodically, "cart-journal-committer");
+        committer.start();
+    }
+
+    /**
+     * The cart with the id, created empty if the journal has none.
+     */
+    public Cart cart(long cartId) {
+        throwIfFailedUnchecked();
+
+        return carts.computeIfAbsent(cartId, id -> new Journaled(id, newCart())).cart;
+    }
+
+    public Set<Long> cartIds() {
+        return Collections.unmodifiableSet(carts.keySet());
+    }
+
+    /**
+     * Forgets the cart. Later changes to it are no longer journaled.
+     */
+    public void discard(long cartId) {
+        Journaled journaled = carts.remove(cartId);
+        if (journaled == null) return;
+
+        journaled.cart.removeListener(journaled);
+        append(JournalSegment.DISCARD, cartId, NO_NAME, NO_NAME, 0, 0);
+    }
+
+    /**
+     * Flushes every change made so far to disk.
+     */
+    public void sync() throws IOException {
+        throwIfFailed();
+
+        JournalSegment current;
+        int position;
+        synchronized (this) {
+            current = segment;
+            position = current.position();
+        }
+
+        // Appends carry on into the mapping while it is forced.
+        for (JournalSegment full : retired) full.force(full.position());
+        if (current.force(position)) syncs.incrementAndGet();
+    }
+
+    /**
+     * Starts a new segment and folds all earlier ones into the snapshot.
+     */
+    public void compact() throws IOException {
+        compactBefore(roll());
+    }
+
+    public long appendCount() {
+        return appends.get();
+    }
+
+    public long syncCount() {
+        return syncs.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+
+        carts.values().forEach(journaled -> journaled.cart.removeListener(journaled));
+        closed = true;
+
+        committer.interrupt();
+        try {
+            committer.join();
+            preparer.shutdown();
+            preparer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            compactor.shutdown();
+            compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        sync();
+        deleteUnusedSegment();
+    }
+
+    private synchronized void append(byte type, long cartId, byte[] name, byte[] title, long cents, int quantity) {
+        if (closed) throw new IllegalStateException("Journal is closed.");
+        throwIfFailedUnchecked();
+
+        if (!segment.append(type, cartId, name, title, cents, quantity)) {
+            long generation = rollUnchecked();
+            if (!segment.append(type, cartId, name, title, cents, quantity))
+                throw new IllegalArgumentException("Change is too large for a journal segment.");
+
+            compactInBackground(generation);
+        }
+
+        appends.incrementAndGet();
+    }
+
+    /**
+     * Moves on to the next segment, returning its generation. The previous one is
+     * flushed in the background; only if the next is still being created is it waited for.
+     */
+    private synchronized long roll() throws IOException {
+        if (closed) throw new IllegalStateException("Journal is closed.");
+
+        JournalSegment full = segment;
+        segment = await(nextSegment);
+        retired.add(full);
+
+        prepareSegment(segment.generation() + 1);
+        preparer.execute(() -> {
+            full.force(full.position());
+            retired.remove(full);
+        });
+        return segment.generation();
+    }
+
+    private void prepareSegment(long generation) {
+        nextSegment = preparer.submit(() -> JournalSegment.create(directory, generation, segmentSize));
+    }
+
+    private static JournalSegment await(Future<JournalSegment> segment) throws IOException {
+        try {
+            return segment.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted creating a journal segment.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) throw cause;
+            throw new IOException("Could not create a journal segment.", e.getCause());
+        }
+    }
+
+    /**
+     * Deletes the segment created ahead that no change was written to.
+     */
+    private synchronized void deleteUnusedSegment() throws IOException {
+        if (nextSegment == null || !nextSegment.isDone()) return;
+
+        try {
+            Files.deleteIfExists(directory.resolve(JournalSegment.fileNameOf(await(nextSegment).generation())));
+        } catch (IOException e) {
+            // It is empty, so replaying it later is harmless.
+        }
+    }
+
+    private long rollUnchecked() {
+        try {
+            return roll();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void compactInBackground(long generation) {
+        compactor.execute(() -> {
+            try {
+                compactBefore(generation);
+            } catch (IOException e) {
+                failure = e;
+            } catch (UncheckedIOException e) {
+                failure = e.getCause();
+            }
+        });
+    }
+
+    private void compactBefore(long generation) throws IOException {
+        synchronized (compactionLock) {
+            Map<Long, Cart> folded = new HashMap<>();
+            long snapshotGeneration = JournalSnapshot.read(directory, folded, this::newCart);
+            if (snapshotGeneration >= generation) return;
+
+            List<Long> generations = segmentGenerations().stream()
+                    .filter(segmentGeneration -> segmentGeneration >= snapshotGeneration && segmentGeneration < generation)
+                    .toList();
+
+            for (long segmentGeneration : generations) {
+                JournalSegment.replay(directory.resolve(JournalSegment.fileNameOf(segmentGeneration)), folded, this::newCart);
+            }
+
+            JournalSnapshot.write(directory, generation, folded);
+
+            for (long segmentGeneration : generations) {
+                Files.deleteIfExists(directory.resolve(JournalSegment.fileNameOf(segmentGeneration)));
+            }
+        }
+    }
+
+    private List<Long> segmentGenerations() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> JournalSegment.generationOf(file.getFileName().toString()))
+                    .filter(generation -> generation >= 0)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private void commitPeriodically() {
+        while (!closed) {
+            LockSupport.parkNanos(commitIntervalNanos);
+
+            try {
+                sync();
+            } catch (IOException e) {
+                failure = e;
+                return;
+            } catch (UncheckedIOException e) {
+                // Forcing a mapping reports I/O errors unchecked.
+                failure = e.getCause();
+                return;
+            }
+        }
+    }
+
+    private void throwIfFailed() throws IOException {
+        IOException failed = failure;
+        if (failed != null) throw new IOException("Journal failed in the background.", failed);
+    }
+
+    private void throwIfFailedUnchecked() {
+        IOException failed = failure;
+        if (failed != null) throw new UncheckedIOException("Journal failed in the background.", failed);
+    }
+
+    private Cart newCart() {
+        return new Cart(productService, taxCalculator);
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * A journaled cart, logging its changes as they are made.
+     */
+    private final class Journaled implements CartListener {
+        Journaled(long cartId, Cart cart) {
+            this.cartId = cartId;
+            this.cart = cart;
+            cart.addListener(this);
+        }
+
+        private final long cartId;
+        private final Cart cart;
+
+        @Override
+        public void added(Cart cart, String productName, Item line, int quantity) {
+            append(JournalSegment.ADD, cartId, utf8(productName), utf8(line.title()), line.price().cents(), quantity);
+        }
+
+        @Override
+        public void removed(Cart cart, String productName, Item line, int quantity) {
+            append(JournalSegment.REMOVE, cartId, utf8(productName), NO_NAME, 0, quantity);
+        }
+
+        @Override
+        public void repriced(Cart cart, String productName, Item line, Money previousPrice) {
+            append(JournalSegment.REPRICE, cartId, utf8(productName), utf8(line.title()), line.price().cents(), 0);
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) throw new IllegalArgumentException("Name or title is too long: " + value);
+
+        return bytes;
+    }
+}
@@ -0,0 +1,35 @@
+package com.changent.persistence;
+
+import com.changent.entities.Cart;
+
+import java.util.Optional;
+
+/**
+ * Holds carts by id.
+ * Carts handed out may be copies of what is stored: changes to one are kept by
+ * saving it.
+ */
+public interface CartRepository {
+    /**
+     * The cart with the id, or empty if there is none.
+     */
+    Optional<Cart> get(long cartId);
+
+    /**
+     * Stores a new, empty cart under the id and returns it.
+     * Fails if there already is a cart with the id.
+     */
+    Cart create(long cartId);
+
+    /**
+     * Stores the cart under the id, replacing any cart already there.
+     */
+    void save(long cartId, Cart cart);
+
+    /**
+     * Removes the cart with the id. Returns false if there was none.
+     */
+    boolean evict(long cartId);
+
+    int size();
+}
@@ -0,0 +1,363 @@
+package com.changent.persistence;
+
+import com.changent.entities.Cart;
+import com.changent.entities.CartListener;
+import com.changent.entities.Item;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decorates a CartRepository, evicting carts that have been idle for the idle timeout.
+ * <p>
+ * A cart is touched when it is created, got or saved, and whenever a cart handed
+ * out by this repository is changed. Of the instances handed out for one id, only
+ * changes to the latest touch it. Listeners hold the cart id, not the cart, so a
+ * cart handed out and dropped can be collected while it is still tracked.
+ * A touch only records the cart's new deadline.
+ * Each cart sits in a TimingWheel once, at the deadline it had when scheduled; when
+ * that fires, a cart touched since is rescheduled at its current deadline rather
+ * than evicted. Touches therefore never move a cart within the wheel, and expiry
+ * costs O(1) per cart.
+ * <p>
+ * Carts are split over stripes by id, each with its own wheel and lock. The public
+ * constructor expires carts on a background thread every tick, until closed.
+ */
+public final class ExpiringCartRepository implements CartRepository, Closeable {
+    public static final Duration DEFAULT_TICK = Duration.ofSeconds(1);
+
+    private static final int STRIPES = 16;
+
+    public ExpiringCartRepository(CartRepository delegate, Duration idleTimeout, CartExpiryListener listener) {
+        this(delegate, idleTimeout, DEFAULT_TICK, listener, Clock.systemUTC());
+
+        expirer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cart-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        expirer.scheduleWithFixedDelay(this::expire, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    ExpiringCartRepository(CartRepository delegate, Duration idleTimeout, Duration tick, CartExpiryListener listener, Clock clock) {
+        Objects.requireNonNull(delegate, "CartRepository is invalid.");
+        Objects.requireNonNull(idleTimeout, "Idle timeout is invalid.");
+        Objects.requireNonNull(tick, "Tick is invalid.");
+        Objects.requireNonNull(listener, "CartExpiryListener is invalid.");
+        Objects.requireNonNull(clock, "Clock is invalid.");
+
+        if (idleTimeout.toMillis() < 1) throw new IllegalArgumentException("Idle timeout is invalid.");
+        if (tick.toMillis() < 1) throw new IllegalArgumentException("Tick is invalid.");
+
+        this.delegate = delegate;
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        this.tickMillis = tick.toMillis();
+        this.listener = listener;
+        this.clock = clock;
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe(new TimingWheel(tickMillis, clock.millis()));
+    }
+
+    private final CartRepository delegate;
+    private final long idleTimeoutMillis;
+    private final long tickMillis;
+    private final CartExpiryListener listener;
+    private final Clock clock;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private ScheduledExecutorService expirer;
+
+    private final AtomicLong expirations = new AtomicLong();
+
+    @Override
+    public Optional<Cart> get(long cartId) {
+        Optional<Cart> cart = delegate.get(cartId);
+
+        cart.ifPresent(found -> watch(cartId, found));
+        return cart;
+    }
+
+    @Override
+    public Cart create(long cartId) {
+        Cart cart = delegate.create(cartId);
+
+        watch(cartId, cart);
+        return cart;
+    }
+
+    @Override
+    public void save(long cartId, Cart cart) {
+        // Touched first, so the cart cannot expire at its old deadline just after it is saved.
+        touch(cartId);
+        delegate.save(cartId, cart);
+    }
+
+    @Override
+    public boolean evict(long cartId) {
+        stripeOf(cartId).forget(cartId);
+        return delegate.evict(cartId);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    /**
+     * Evicts every cart idle for the idle timeout, telling the listener of each.
+     */
+    public void expire() {
+        long now = clock.millis();
+
+        for (Stripe stripe : stripes) {
+            for (Expired expired : stripe.expire(now)) {
+                expirations.incrementAndGet();
+                listener.expired(expired.cartId, expired.cart);
+            }
+        }
+    }
+
+    public long expiredCount() {
+        return expirations.get();
+    }
+
+    @Override
+    public void close() {
+        if (expirer != null) expirer.shutdownNow();
+    }
+
+    private void watch(long cartId, Cart cart) {
+        stripeOf(cartId).watch(cartId, cart, deadline());
+    }
+
+    private void touch(long cartId) {
+        stripeOf(cartId).touch(cartId, deadline());
+    }
+
+    private long deadline() {
+        return Math.addExact(clock.millis(), idleTimeoutMillis);
+    }
+
+    private Stripe stripeOf(long cartId) {
+        return stripes[(int) ((cartId ^ (cartId >>> 32)) * 0x9e3779b9L >>> 28) & (STRIPES - 1)];
+    }
+
+    private record Expired(long cartId, Cart cart) {}
+
+    /**
+     * Touches a cart id when the instance it listens to changes, as long as that
+     * is still the latest instance handed out under the id, which the stamp tells.
+     * Equal to any Toucher of the same repository and id, so a cart handed out again
+     * has its previous one replaced rather than another added.
+     */
+    private final class Toucher implements CartListener {
+        Toucher(long cartId, long stamp) {
+            this.cartId = cartId;
+            this.stamp = stamp;
+        }
+
+        private final long cartId;
+        private final long stamp;
+
+        @Override
+        public void added(Cart cart, String productName, Item line, int quantity) {
+            stripeOf(cartId).touch(cartId, stamp, deadline());
+        }
+
+        @Override
+        public void removed(Cart cart, String productName, Item line, int quantity) {
+            stripeOf(cartId).touch(cartId, stamp, deadline());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Toucher other && other.owner() == owner() && other.cartId == cartId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(cartId);
+        }
+
+        private ExpiringCartRepository owner() {
+            return ExpiringCartRepository.this;
+        }
+    }
+
+    private final class Stripe {
+        Stripe(TimingWheel wheel) {
+            this.wheel = wheel;
+        }
+
+        private final TimingWheel wheel;
+        private final Deadlines deadlines = new Deadlines();
+        private long lastStamp;
+
+        synchronized void touch(long cartId, long deadline) {
+            if (deadlines.put(cartId, deadline) == Deadlines.NONE) wheel.schedule(cartId, deadline);
+        }
+
+        /**
+         * Touches the cart id if the instance stamped with stamp is still its latest.
+         */
+        synchronized void touch(long cartId, long stamp, long deadline) {
+            if (deadlines.stampOf(cartId) == stamp) deadlines.put(cartId, deadline);
+        }
+
+        /**
+         * Touches the cart id and makes the cart its latest instance. The listener
+         * is swapped under the lock, so two reads of one cart cannot both add one.
+         */
+        synchronized void watch(long cartId, Cart cart, long deadline) {
+            touch(cartId, deadline);
+
+            long stamp = ++lastStamp;
+            deadlines.stamp(cartId, stamp);
+            Toucher toucher = new Toucher(cartId, stamp);
+            cart.removeListener(toucher);
+            cart.addListener(toucher);
+        }
+
+        synchronized void forget(long cartId) {
+            deadlines.remove(cartId);
+        }
+
+        /**
+         * Evicts the stripe's idle carts from the delegate. The listener is told
+         * by the caller, outside the lock.
+         */
+        synchronized List<Expired> expire(long now) {
+            List<Expired> expired = new ArrayList<>();
+
+            wheel.advanceTo(now, cartId -> {
+                long deadline = deadlines.get(cartId);
+
+                if (deadline == Deadlines.NONE) return;
+                if (deadline > now) {
+                    wheel.schedule(cartId, deadline);
+                    return;
+                }
+
+                deadlines.remove(cartId);
+                Optional<Cart> cart = delegate.get(cartId);
+                if (cart.isPresent() && delegate.evict(cartId)) expired.add(new Expired(cartId, cart.get()));
+            });
+
+            return expired;
+        }
+    }
+
+    /**
+     * Deadlines by cart id, in primitive arrays with open addressing, each with the
+     * stamp of the cart's latest watched instance. Deadlines are never zero, so zero
+     * marks an empty slot; stamps are never zero either, so zero means unwatched.
+     */
+    private static final class Deadlines {
+        static final long NONE = 0;
+
+        private long[] cartIds = new long[64];
+        private long[] deadlines = new long[64];
+        private long[] stamps = new long[64];
+        private int size;
+
+        long get(long cartId) {
+            int slot = slotOf(cartId);
+            return slot < 0 ? NONE : deadlines[slot];
+        }
+
+        long stampOf(long cartId) {
+            int slot = slotOf(cartId);
+            return slot < 0 ? NONE : stamps[slot];
+        }
+
+        /**
+         * Sets the stamp of a cart id that has a deadline.
+         */
+        void stamp(long cartId, long stamp) {
+            int slot = slotOf(cartId);
+            if (slot >= 0) stamps[slot] = stamp;
+        }
+
+        /**
+         * Sets the deadline, returning the previous one or NONE.
+         */
+        long put(long cartId, long deadline) {
+            int slot = slotOf(cartId);
+            if (slot >= 0) {
+                long previous = deadlines[slot];
+                deadlines[slot] = deadline;
+                return previous;
+            }
+
+            if (size + 1 > cartIds.length / 4 * 3) {
+                grow();
+                slot = slotOf(cartId);
+            }
+
+            cartIds[-slot - 1] = cartId;
+            deadlines[-slot - 1] = deadline;
+            stamps[-slot - 1] = NONE;
+            size++;
+            return NONE;
+        }
+
+        void remove(long cartId) {
+            int hole = slotOf(cartId);
+            if (hole < 0) return;
+
+            int mask = cartIds.length - 1;
+            for (int slot = (hole + 1) & mask; deadlines[slot] != NONE; slot = (slot + 1) & mask) {
+                int home = homeOf(cartIds[slot], mask);
+
+                if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                    cartIds[hole] = cartIds[slot];
+                    deadlines[hole] = deadlines[slot];
+                    stamps[hole] = stamps[slot];
+                    hole = slot;
+                }
+            }
+
+            deadlines[hole] = NONE;
+            size--;
+        }
+
+        private int slotOf(long cartId) {
+            int mask = cartIds.length - 1;
+
+            for (int slot = homeOf(cartId, mask); ; slot = (slot + 1) & mask) {
+                if (deadlines[slot] == NONE) return -slot - 1;
+                if (cartIds[slot] == cartId) return slot;
+            }
+        }
+
+        private void grow() {
+            long[] oldCartIds = cartIds;
+            long[] oldDeadlines = deadlines;
+            long[] oldStamps = stamps;
+
+            cartIds = new long[oldCartIds.length * 2];
+            deadlines = new long[oldDeadlines.length * 2];
+            stamps = new long[oldStamps.length * 2];
+
+            for (int i = 0; i < oldCartIds.length; i++) {
+                if (oldDeadlines[i] == NONE) continue;
+
+                int slot = -slotOf(oldCartIds[i]) - 1;
+                cartIds[slot] = oldCartIds[i];
+                deadlines[slot] = oldDeadlines[i];
+                stamps[slot] = oldStamps[i];
+            }
+        }
+
+        private static int homeOf(long cartId, int mask) {
+            return (int) (cartId * 0x9e3779b97f4a7c15L >>> 32) & mask;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.changent.persistence;
+
+import com.changent.entities.Cart;
+import com.changent.entities.Item;
+import com.changent.entities.ProductRegistry;
+import com.changent.valueobjects.Money;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * One memory mapped, append only file of cart changes.
+ *
+ * <pre>
+ * header: int magic "CJNL", short version, short unused, long generation
+ * records: int payload length, int CRC32C of the payload, payload
+ *   payload: byte type, long cart id, short name length, name,
+ *            ADD and REPRICE: short title length, title, long price in cents,
+ *            ADD and REMOVE: int quantity
+ * </pre>
+ *
+ * Segments are created at their full size, so the unwritten tail reads as zeros.
+ * Replay stops at the first zero length or checksum mismatch, which is where a
+ * crash cut the log short.
+ */
+final class JournalSegment {
+    static final int MAGIC = 'C' << 24 | 'J' << 16 | 'N' << 8 | 'L';
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+
+    static final byte ADD = 1;
+    static final byte REMOVE = 2;
+    static final byte DISCARD = 3;
+    static final byte REPRICE = 4;
+
+    private JournalSegment(long generation, MappedByteBuffer buffer) {
+        this.generation = generation;
+        this.buffer = buffer;
+        this.durablePosition = HEADER_SIZE;
+    }
+
+    private final long generation;
+    private final MappedByteBuffer buffer;
+    private final CRC32C crc = new CRC32C();
+
+    // Appends are guarded by CartJournal, forces by this.
+    private int durablePosition;
+
+    static String fileNameOf(long generation) {
+        return String.format("journal-%016d.log", generation);
+    }
+
+    /**
+     * The generation of a segment file name, or -1 if it is not one.
+     */
+    static long generationOf(String fileName) {
+        if (!fileName.matches("journal-\\d{16}\\.log")) return -1;
+
+        return Long.parseLong(fileName.substring("journal-".length(), fileName.length() - ".log".length()));
+    }
+
+    static JournalSegment create(Path directory, long generation, int size) throws IOException {
+        Path file = directory.resolve(fileNameOf(generation));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC)
+                    .putShort(VERSION)
+                    .putShort((short) 0)
+                    .putLong(generation);
+            return new JournalSegment(generation, buffer);
+        }
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    int position() {
+        return buffer.position();
+    }
+
+    /**
+     * Appends a record, or returns false, writing nothing, if it does not fit.
+     */
+    boolean append(byte type, long cartId, byte[] name, byte[] title, long cents, int quantity) {
+        int payloadSize = 1 + Long.BYTES + Short.BYTES + name.length;
+        if (hasProduct(type)) payloadSize += Short.BYTES + title.length + Long.BYTES;
+        if (hasQuantity(type)) payloadSize += Integer.BYTES;
+
+        if (buffer.remaining() < RECORD_HEADER_SIZE + payloadSize) return false;
+
+        int start = buffer.position();
+        buffer.position(start + RECORD_HEADER_SIZE);
+        buffer.put(type).putLong(cartId).putShort((short) name.length).put(name);
+        if (hasProduct(type)) buffer.putShort((short) title.length).put(title).putLong(cents);
+        if (hasQuantity(type)) buffer.putInt(quantity);
+
+        crc.reset();
+        crc.update(buffer.duplicate().position(start + RECORD_HEADER_SIZE).limit(buffer.position()));
+        buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+        buffer.putInt(start, payloadSize);
+
+        return true;
+    }
+
+    /**
+     * Flushes everything appended so far to the file. Returns false if there was nothing to flush.
+     */
+    synchronized boolean force(int position) {
+        if (position <= durablePosition) return false;
+
+        buffer.force(durablePosition, position - durablePosition);
+        durablePosition = position;
+        return true;
+    }
+
+    /**
+     * Applies the records of a segment file to the carts, keyed by id.
+     * Carts are made by newCart as additions refer to them and removed when discarded.
+     */
+    static void replay(Path file, Map<Long, Cart> carts, Supplier<Cart> newCart) throws IOException {
+        ByteBuffer segment;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Not a journal segment: " + file);
+
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (segment.getInt(0) != MAGIC) throw new IOException("Not a journal segment: " + file);
+        if (segment.getShort(Integer.BYTES) != VERSION)
+            throw new IOException("Unsupported journal version " + segment.getShort(Integer.BYTES) + ": " + file);
+
+        CRC32C crc = new CRC32C();
+        int position = HEADER_SIZE;
+
+        while (position + RECORD_HEADER_SIZE <= segment.capacity()) {
+            int payloadSize = segment.getInt(position);
+            int payloadStart = position + RECORD_HEADER_SIZE;
+            if (payloadSize <= 0 || payloadSize > segment.capacity() - payloadStart) return;
+
+            crc.reset();
+            crc.update(segment.duplicate().position(payloadStart).limit(payloadStart + payloadSize));
+            if ((int) crc.getValue() != segment.getInt(position + Integer.BYTES)) return;
+
+            apply(segment.duplicate().position(payloadStart), carts, newCart);
+            position = payloadStart + payloadSize;
+        }
+    }
+
+    private static void apply(ByteBuffer payload, Map<Long, Cart> carts, Supplier<Cart> newCart) {
+        byte type = payload.get();
+        long cartId = payload.getLong();
+        String name = getString(payload);
+
+        switch (type) {
+            case ADD -> {
+                String title = getString(payload);
+                Money price = Money.ofCents(payload.getLong());
+                int quantity = payload.getInt();
+                carts.computeIfAbsent(cartId, id -> newCart.get())
+                        .restore(name, new Item(ProductRegistry.productOf(title, price), quantity));
+            }
+            case REMOVE -> {
+                int quantity = payload.getInt();
+                // A removal cannot make a cart; one from before a discard has nothing to remove from.
+                Cart cart = carts.get(cartId);
+                if (cart != null) cart.removeProduct(name, quantity);
+            }
+            case REPRICE -> {
+                String title = getString(payload);
+                Money price = Money.ofCents(payload.getLong());
+                Cart cart = carts.get(cartId);
+                if (cart != null) cart.reprice(ProductRegistry.productOf(title, price));
+            }
+            case DISCARD -> carts.remove(cartId);
+            default -> throw new IllegalStateException("Unknown journal record type " + type + ".");
+        }
+    }
+
+    private static boolean hasProduct(byte type) {
+        return type == ADD || type == REPRICE;
+    }
+
+    private static boolean hasQuantity(byte type) {
+        return type == ADD || type == REMOVE;
+    }
+
+    private static String getString(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getShort()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,111 @@
+package com.changent.persistence;
+
+import com.changent.entities.Cart;
+import com.changent.entities.CartBinaryCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * The carts of a journal as of a generation: every segment before that
+ * generation has been applied, none from it on.
+ *
+ * <pre>
+ * int magic "CSNP", short version, short unused, long generation, int cart count
+ * per cart: long cart id, int length, the cart as written by CartBinaryCodec
+ * int CRC32C of everything before it
+ * </pre>
+ */
+final class JournalSnapshot {
+    private JournalSnapshot() {}
+
+    static final String FILE_NAME = "snapshot.bin";
+
+    static final int MAGIC = 'C' << 24 | 'S' << 16 | 'N' << 8 | 'P';
+    static final short VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+
+    /**
+     * Reads the snapshot into carts made by newCart and returns its generation,
+     * or 0 if the directory has no snapshot.
+     */
+    static long read(Path directory, Map<Long, Cart> carts, Supplier<Cart> newCart) throws IOException {
+        Path file = directory.resolve(FILE_NAME);
+        if (!Files.exists(file)) return 0;
+
+        ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (snapshot.capacity() < HEADER_SIZE + Integer.BYTES || snapshot.getInt(0) != MAGIC)
+            throw new IOException("Not a journal snapshot: " + file);
+        if (snapshot.getShort(Integer.BYTES) != VERSION)
+            throw new IOException("Unsupported snapshot version " + snapshot.getShort(Integer.BYTES) + ": " + file);
+
+        int checksumOffset = snapshot.capacity() - Integer.BYTES;
+        CRC32C crc = new CRC32C();
+        crc.update(snapshot.array(), 0, checksumOffset);
+        if ((int) crc.getValue() != snapshot.getInt(checksumOffset)) throw new IOException("Snapshot is corrupt: " + file);
+
+        long generation = snapshot.getLong(8);
+        int cartCount = snapshot.getInt(16);
+
+        snapshot.position(HEADER_SIZE);
+        for (int i = 0; i < cartCount; i++) {
+            long cartId = snapshot.getLong();
+            int length = snapshot.getInt();
+            ByteBuffer encoded = snapshot.slice(snapshot.position(), length);
+            snapshot.position(snapshot.position() + length);
+
+            Cart cart = newCart.get();
+            CartBinaryCodec.decodeInto(encoded, cart, null);
+            carts.put(cartId, cart);
+        }
+
+        return generation;
+    }
+
+    /**
+     * Replaces the directory's snapshot. The file is written next to its
+     * destination and then moved into place, so a crash leaves either the
+     * old snapshot or the new one.
+     */
+    static void write(Path directory, long generation, Map<Long, Cart> carts) throws IOException {
+        long size = HEADER_SIZE + Integer.BYTES;
+        for (Cart cart : carts.values()) size += Long.BYTES + Integer.BYTES + CartBinaryCodec.encodedSize(cart);
+        if (size > Integer.MAX_VALUE) throw new IOException("Snapshot is too large.");
+
+        ByteBuffer snapshot = ByteBuffer.allocate((int) size);
+        snapshot.putInt(MAGIC)
+                .putShort(VERSION)
+                .putShort((short) 0)
+                .putLong(generation)
+                .putInt(carts.size());
+
+        carts.forEach((cartId, cart) -> {
+            snapshot.putLong(cartId).putInt(CartBinaryCodec.encodedSize(cart));
+            CartBinaryCodec.encode(cart, snapshot);
+        });
+
+        CRC32C crc = new CRC32C();
+        crc.update(snapshot.array(), 0, snapshot.position());
+        snapshot.putInt((int) crc.getValue());
+
+        Path file = directory.resolve(FILE_NAME);
+        Path temporary = Files.createTempFile(directory, FILE_NAME, ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            snapshot.flip();
+            while (snapshot.hasRemaining()) channel.write(snapshot);
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
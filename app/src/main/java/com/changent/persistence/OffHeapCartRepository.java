@@ -0,0 +1,279 @@
+package com.changent.persistence;
+
+import com.changent.entities.Cart;
+import com.changent.entities.CartBinaryCodec;
+import com.changent.entities.ProductDictionary;
+import com.changent.entities.TaxCalculator;
+import com.changent.services.ProductService;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Stores carts off the heap, so that millions of them add nothing for the
+ * garbage collector to trace.
+ * <p>
+ * Each cart is kept as its CartBinaryCodec encoding in a chunk from a
+ * SlabAllocator, and found through an open addressing index, itself a direct
+ * buffer of (cart id, chunk address) slots. Carts are split over stripes by id,
+ * each with its own index and lock, so carts in different stripes are read and
+ * written in parallel.
+ * <p>
+ * get materializes a new Cart from the stored bytes every time; changes to it
+ * are kept by saving it. When a ProductDictionary is given, e.g. the catalog,
+ * the products it knows are stored as ids, which keeps most carts in the
+ * smallest chunks.
+ * <p>
+ * Carts are made, and materialized, with the repository's TaxCalculator, which
+ * is not stored with them; saving a cart made with another is refused.
+ * <p>
+ * Off heap memory is limited by -XX:MaxDirectMemorySize, which defaults to the
+ * maximum heap size.
+ */
+public final class OffHeapCartRepository implements CartRepository {
+    private static final int STRIPE_BITS = 6;
+    private static final int INITIAL_SLOTS = 1024;
+    private static final int MAX_SLOTS = 1 << 26;
+    private static final int SLOT_SIZE = 2 * Long.BYTES;
+    // A chunk starts with an int holding the encoding's length in its low 24 bits and,
+    // in its high byte, the power of two the chunk was allocated as, to free it by.
+    private static final int LENGTH_SIZE = Integer.BYTES;
+    private static final int LENGTH_MASK = (1 << 24) - 1;
+    private static final long EMPTY = 0;
+
+    public OffHeapCartRepository(ProductService productService) {
+        this(productService, null);
+    }
+
+    public OffHeapCartRepository(ProductService productService, ProductDictionary dictionary) {
+        this(productService, dictionary, Cart.DEFAULT_TAX);
+    }
+
+    public OffHeapCartRepository(ProductService productService, ProductDictionary dictionary, TaxCalculator taxCalculator) {
+        Objects.requireNonNull(productService, "ProductService is invalid.");
+        Objects.requireNonNull(taxCalculator, "TaxCalculator is invalid.");
+
+        this.productService = productService;
+        this.dictionary = dictionary;
+        this.taxCalculator = taxCalculator;
+        for (int i = 0; i < stripes.length; i++) stripes[i] = new Stripe();
+    }
+
+    private final ProductService productService;
+    private final ProductDictionary dictionary;
+    private final TaxCalculator taxCalculator;
+    private final SlabAllocator allocator = new SlabAllocator();
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+
+    @Override
+    public Optional<Cart> get(long cartId) {
+        return stripeOf(cartId).get(cartId);
+    }
+
+    @Override
+    public Cart create(long cartId) {
+        return stripeOf(cartId).create(cartId);
+    }
+
+    @Override
+    public void save(long cartId, Cart cart) {
+        Objects.requireNonNull(cart, "Cart is invalid.");
+        if (cart.taxCalculator() != taxCalculator)
+            throw new IllegalArgumentException("Cart " + cartId + " has a different TaxCalculator than the repository.");
+
+        stripeOf(cartId).save(cartId, cart);
+    }
+
+    @Override
+    public boolean evict(long cartId) {
+        return stripeOf(cartId).evict(cartId);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) size += stripe.size();
+
+        return size;
+    }
+
+    /**
+     * The direct memory held for carts and their index, including freed chunks kept for reuse.
+     */
+    public long offHeapBytes() {
+        long bytes = allocator.reservedBytes();
+        for (Stripe stripe : stripes) bytes += stripe.indexBytes();
+
+        return bytes;
+    }
+
+    private Stripe stripeOf(long cartId) {
+        return stripes[(int) (hash(cartId) >>> (Long.SIZE - STRIPE_BITS))];
+    }
+
+    // The murmur3 finalizer: stripes take the high bits of the hash, slots the low bits.
+    private static long hash(long cartId) {
+        long h = cartId;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private final class Stripe {
+        private ByteBuffer index = ByteBuffer.allocateDirect(INITIAL_SLOTS * SLOT_SIZE);
+        private int slotCount = INITIAL_SLOTS;
+        private int size;
+
+        synchronized Optional<Cart> get(long cartId) {
+            int slot = slotOf(cartId);
+            if (slot < 0) return Optional.empty();
+
+            long address = addressAt(slot);
+            int offset = SlabAllocator.offsetOf(address);
+            ByteBuffer slab = allocator.slab(address);
+            ByteBuffer encoded = slab.slice(offset + LENGTH_SIZE, slab.getInt(offset) & LENGTH_MASK);
+
+            Cart cart = new Cart(productService, taxCalculator);
+            CartBinaryCodec.decodeInto(encoded, cart, dictionary);
+            return Optional.of(cart);
+        }
+
+        synchronized Cart create(long cartId) {
+            if (slotOf(cartId) >= 0) throw new IllegalArgumentException("Cart " + cartId + " already exists.");
+
+            Cart cart = new Cart(productService, taxCalculator);
+            save(cartId, cart);
+            return cart;
+        }
+
+        synchronized void save(long cartId, Cart cart) {
+            long address;
+            int length;
+
+            // A cart changed by another thread while it is encoded may outgrow its chunk; encode it again.
+            while (true) {
+                int bytes = LENGTH_SIZE + CartBinaryCodec.encodedSize(cart, dictionary);
+                if (bytes > SlabAllocator.SLAB_SIZE) throw new IllegalArgumentException("Cart " + cartId + " is too large to be stored.");
+
+                address = allocator.allocate(bytes);
+                int offset = SlabAllocator.offsetOf(address);
+                int chunkSize = SlabAllocator.chunkSizeOf(bytes);
+                ByteBuffer chunk = allocator.slab(address).slice(offset, chunkSize);
+
+                try {
+                    CartBinaryCodec.encode(cart, chunk.position(LENGTH_SIZE), dictionary);
+                } catch (BufferOverflowException e) {
+                    allocator.free(address, bytes);
+                    continue;
+                }
+
+                length = chunk.position() - LENGTH_SIZE;
+                chunk.putInt(0, Integer.numberOfTrailingZeros(chunkSize) << 24 | length);
+                break;
+            }
+
+            int slot = slotOf(cartId);
+            if (slot >= 0) {
+                free(addressAt(slot));
+                index.putLong(slot * SLOT_SIZE + Long.BYTES, address);
+                return;
+            }
+
+            if (size + 1 > slotCount / 4 * 3) {
+                grow();
+                slot = slotOf(cartId);
+            }
+
+            slot = -slot - 1;
+            index.putLong(slot * SLOT_SIZE, cartId);
+            index.putLong(slot * SLOT_SIZE + Long.BYTES, address);
+            size++;
+        }
+
+        synchronized boolean evict(long cartId) {
+            int slot = slotOf(cartId);
+            if (slot < 0) return false;
+
+            free(addressAt(slot));
+            removeSlot(slot);
+            size--;
+            return true;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long indexBytes() {
+            return index.capacity();
+        }
+
+        private void free(long address) {
+            // By the size allocated, which is more than the length if the cart shrank while it was encoded.
+            allocator.free(address, 1 << (allocator.slab(address).getInt(SlabAllocator.offsetOf(address)) >>> 24));
+        }
+
+        /**
+         * The slot holding the cart id, or, if there is none, -(the empty slot it would go in) - 1.
+         */
+        private int slotOf(long cartId) {
+            int mask = slotCount - 1;
+
+            for (int slot = (int) hash(cartId) & mask; ; slot = (slot + 1) & mask) {
+                if (addressAt(slot) == EMPTY) return -slot - 1;
+                if (index.getLong(slot * SLOT_SIZE) == cartId) return slot;
+            }
+        }
+
+        private long addressAt(int slot) {
+            return index.getLong(slot * SLOT_SIZE + Long.BYTES);
+        }
+
+        /**
+         * Empties the slot, shifting back later entries of its probe run so that
+         * lookups never stop early at the hole.
+         */
+        private void removeSlot(int hole) {
+            int mask = slotCount - 1;
+
+            for (int slot = (hole + 1) & mask; addressAt(slot) != EMPTY; slot = (slot + 1) & mask) {
+                long cartId = index.getLong(slot * SLOT_SIZE);
+                int home = (int) hash(cartId) & mask;
+
+                if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                    index.putLong(hole * SLOT_SIZE, cartId);
+                    index.putLong(hole * SLOT_SIZE + Long.BYTES, addressAt(slot));
+                    hole = slot;
+                }
+            }
+
+            index.putLong(hole * SLOT_SIZE, 0);
+            index.putLong(hole * SLOT_SIZE + Long.BYTES, EMPTY);
+        }
+
+        private void grow() {
+            if (slotCount == MAX_SLOTS) throw new IllegalStateException("Repository is full.");
+
+            ByteBuffer old = index;
+            int oldSlotCount = slotCount;
+
+            index = ByteBuffer.allocateDirect(oldSlotCount * 2 * SLOT_SIZE);
+            slotCount = oldSlotCount * 2;
+
+            for (int slot = 0; slot < oldSlotCount; slot++) {
+                long address = old.getLong(slot * SLOT_SIZE + Long.BYTES);
+                if (address == EMPTY) continue;
+
+                long cartId = old.getLong(slot * SLOT_SIZE);
+                int free = -slotOf(cartId) - 1;
+                index.putLong(free * SLOT_SIZE, cartId);
+                index.putLong(free * SLOT_SIZE + Long.BYTES, address);
+            }
+        }
+    }
+}
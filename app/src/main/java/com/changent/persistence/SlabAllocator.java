@@ -0,0 +1,99 @@
+package com.changent.persistence;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Hands out chunks of large direct buffers, so stored data costs the heap nothing.
+ * <p>
+ * Chunk sizes are powers of two from 32 bytes to the 1MB slab size. A slab is
+ * carved into chunks of one size as they are needed, and freed chunks are kept
+ * on a list per size, linked through their first bytes, for reuse. Slabs are
+ * never released; the memory of freed chunks is reused, not returned.
+ * <p>
+ * A chunk is addressed by a long holding its slab number, counted from 1 so
+ * no address is 0, in the high int and its offset in the low int.
+ */
+final class SlabAllocator {
+    static final int SLAB_SIZE = 1 << 20;
+    static final int MIN_CHUNK_SHIFT = 5;
+
+    private static final int SIZE_CLASSES = Integer.numberOfTrailingZeros(SLAB_SIZE) - MIN_CHUNK_SHIFT + 1;
+    private static final long NONE = 0;
+
+    // Grown by copying. A new slab is stored in a free element and the array is then
+    // written back to the field, so a reader holding an address of it sees it without a lock.
+    private volatile ByteBuffer[] slabs = new ByteBuffer[16];
+    private int slabCount;
+
+    private final long[] freeChunks = new long[SIZE_CLASSES];
+    private final long[] unusedChunks = new long[SIZE_CLASSES];
+
+    /**
+     * The size of the chunk that holds the bytes.
+     */
+    static int chunkSizeOf(int bytes) {
+        if (bytes < 1 || bytes > SLAB_SIZE) throw new IllegalArgumentException("Chunk size is invalid.");
+
+        return 1 << Math.max(MIN_CHUNK_SHIFT, 32 - Integer.numberOfLeadingZeros(bytes - 1));
+    }
+
+    static int offsetOf(long address) {
+        return (int) address;
+    }
+
+    /**
+     * Allocates a chunk large enough for the bytes and returns its address.
+     */
+    synchronized long allocate(int bytes) {
+        int sizeClass = sizeClassOf(bytes);
+        long address = freeChunks[sizeClass];
+
+        if (address != NONE) {
+            freeChunks[sizeClass] = slab(address).getLong(offsetOf(address));
+            return address;
+        }
+
+        address = unusedChunks[sizeClass];
+        if (address == NONE) address = (long) newSlab() << 32;
+
+        int next = offsetOf(address) + chunkSizeOf(bytes);
+        unusedChunks[sizeClass] = next < SLAB_SIZE ? (address & ~0xffffffffL) | next : NONE;
+
+        return address;
+    }
+
+    /**
+     * Frees a chunk allocated for the bytes.
+     */
+    synchronized void free(long address, int bytes) {
+        int sizeClass = sizeClassOf(bytes);
+
+        slab(address).putLong(offsetOf(address), freeChunks[sizeClass]);
+        freeChunks[sizeClass] = address;
+    }
+
+    /**
+     * The slab holding the chunk. Its position and limit are not to be changed.
+     */
+    ByteBuffer slab(long address) {
+        return slabs[(int) (address >>> 32) - 1];
+    }
+
+    synchronized long reservedBytes() {
+        return (long) slabCount * SLAB_SIZE;
+    }
+
+    private int newSlab() {
+        if (slabCount == slabs.length) slabs = Arrays.copyOf(slabs, slabCount * 2);
+
+        ByteBuffer[] current = slabs;
+        current[slabCount++] = ByteBuffer.allocateDirect(SLAB_SIZE);
+        slabs = current;
+        return slabCount;
+    }
+
+    private static int sizeClassOf(int bytes) {
+        return Integer.numberOfTrailingZeros(chunkSizeOf(bytes)) - MIN_CHUNK_SHIFT;
+    }
+}
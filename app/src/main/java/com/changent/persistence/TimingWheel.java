@@ -0,0 +1,110 @@
+package com.changent.persistence;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * A hierarchical timing wheel of ids, firing each id once its tick has passed.
+ * <p>
+ * Level 0 has a bucket per tick for the next 64 ticks, level 1 a bucket per 64
+ * ticks for the next 64 * 64, and so on. Scheduling appends the id to a bucket
+ * and advancing a tick empties one bucket, moving the ids of a higher level
+ * bucket down a level when its span begins, so both are O(1) per id however
+ * many are scheduled. Ids further out than the top level reaches are fired at
+ * its end; callers check, and reschedule, what they are fired.
+ * <p>
+ * Not thread safe. Ids are held in primitive arrays, with no object per id.
+ */
+final class TimingWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    TimingWheel(long tickMillis, long nowMillis) {
+        if (tickMillis < 1) throw new IllegalArgumentException("Tick is invalid.");
+
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    private final long tickMillis;
+    private final Bucket[][] buckets = new Bucket[LEVELS][SLOTS];
+    private long currentTick;
+    private int size;
+
+    /**
+     * Schedules the id to fire once the deadline has passed, at the latest one tick after it.
+     */
+    void schedule(long id, long deadlineMillis) {
+        place(id, Math.max(Math.floorDiv(deadlineMillis, tickMillis) + 1, currentTick + 1));
+        size++;
+    }
+
+    /**
+     * Fires every id due up to now, in deadline order, tick by tick.
+     */
+    void advanceTo(long nowMillis, LongConsumer fired) {
+        long nowTick = nowMillis / tickMillis;
+
+        while (currentTick < nowTick) {
+            currentTick++;
+
+            for (int level = 1; level < LEVELS && (currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0; level++) {
+                Bucket bucket = take(level, slotOf(currentTick, level));
+                for (int i = 0; bucket != null && i < bucket.size; i++) place(bucket.ids[i], Math.max(bucket.ticks[i], currentTick));
+            }
+
+            Bucket due = take(0, slotOf(currentTick, 0));
+            if (due == null) continue;
+
+            size -= due.size;
+            for (int i = 0; i < due.size; i++) fired.accept(due.ids[i]);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void place(long id, long tick) {
+        long delta = tick - currentTick;
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) level++;
+
+        // Beyond the top level's reach: park the id in its furthest bucket.
+        if (delta >= 1L << (SLOT_BITS * LEVELS)) tick = currentTick + (1L << (SLOT_BITS * LEVELS)) - 1;
+
+        int slot = slotOf(tick, level);
+        Bucket bucket = buckets[level][slot];
+        if (bucket == null) bucket = buckets[level][slot] = new Bucket();
+        bucket.add(id, tick);
+    }
+
+    private Bucket take(int level, int slot) {
+        Bucket bucket = buckets[level][slot];
+        buckets[level][slot] = null;
+        return bucket;
+    }
+
+    private static int slotOf(long tick, int level) {
+        return (int) (tick >>> (SLOT_BITS * level)) & MASK;
+    }
+
+    private static final class Bucket {
+        long[] ids = new long[4];
+        long[] ticks = new long[4];
+        int size;
+
+        void add(long id, long tick) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                ticks = Arrays.copyOf(ticks, size * 2);
+            }
+            ids[size] = id;
+            ticks[size] = tick;
+            size++;
+        }
+    }
+}
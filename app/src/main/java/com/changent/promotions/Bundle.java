@@ -0,0 +1,37 @@
+package com.changent.promotions;
+
+import com.changent.valueobjects.Money;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One each of several titles for a fixed price.
+ * Applies once per complete set; a set already cheaper than the price gets nothing.
+ */
+public record Bundle(String id, List<String> titles, Money price) implements Promotion {
+    public Bundle {
+        Objects.requireNonNull(id, "Id is invalid.");
+        Objects.requireNonNull(titles, "Titles are invalid.");
+        Objects.requireNonNull(price, "Price is invalid.");
+
+        titles = List.copyOf(titles);
+        if (titles.size() < 2) throw new IllegalArgumentException("A bundle needs at least two titles.");
+        if (titles.stream().distinct().count() != titles.size()) throw new IllegalArgumentException("Bundle titles must differ.");
+        if (price.isNegative()) throw new IllegalArgumentException("Price cannot be negative.");
+    }
+
+    @Override
+    public long discountInCents(Lines lines) {
+        int sets = Integer.MAX_VALUE;
+        long setCents = 0;
+
+        for (String title : titles) {
+            sets = Math.min(sets, lines.quantityOf(title));
+            if (sets == 0) return 0;
+            setCents = Money.add(setCents, lines.unitCentsOf(title));
+        }
+
+        return Money.multiply(Math.max(0, setCents - price.cents()), sets);
+    }
+}
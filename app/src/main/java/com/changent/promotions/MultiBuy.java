@@ -0,0 +1,32 @@
+package com.changent.promotions;
+
+import com.changent.valueobjects.Money;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Buy some of a title and pay for fewer, e.g. 3 for 2.
+ * Applies once per whole group bought.
+ */
+public record MultiBuy(String id, String title, int buy, int payFor) implements Promotion {
+    public MultiBuy {
+        Objects.requireNonNull(id, "Id is invalid.");
+        Objects.requireNonNull(title, "Title is invalid.");
+
+        if (buy < 1) throw new IllegalArgumentException("Buy must be positive.");
+        if (payFor < 0 || payFor >= buy) throw new IllegalArgumentException("Pay for must be less than buy.");
+    }
+
+    @Override
+    public List<String> titles() {
+        return List.of(title);
+    }
+
+    @Override
+    public long discountInCents(Lines lines) {
+        int groups = lines.quantityOf(title) / buy;
+
+        return Money.multiply(Money.multiply(lines.unitCentsOf(title), buy - payFor), groups);
+    }
+}
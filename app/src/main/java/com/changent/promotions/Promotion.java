@@ -0,0 +1,37 @@
+package com.changent.promotions;
+
+import java.util.List;
+
+/**
+ * A rule that takes money off a cart depending on the lines holding some titles.
+ * A promotion only reads the lines of its titles, so it is re-evaluated only
+ * when one of them changes.
+ */
+public sealed interface Promotion permits MultiBuy, Bundle {
+    String id();
+
+    /**
+     * The titles the promotion depends on; its discount is taxed as the first.
+     */
+    List<String> titles();
+
+    /**
+     * The discount for the lines, in cents; zero if the promotion does not apply.
+     */
+    long discountInCents(Lines lines);
+
+    /**
+     * The cart lines of the promotion's titles.
+     */
+    interface Lines {
+        /**
+         * The quantity held of the title, over all lines with it.
+         */
+        int quantityOf(String title);
+
+        /**
+         * The lowest unit price of the title's lines, or zero if none is held.
+         */
+        long unitCentsOf(String title);
+    }
+}
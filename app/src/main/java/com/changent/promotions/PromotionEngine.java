@@ -0,0 +1,157 @@
+package com.changent.promotions;
+
+import com.changent.entities.Cart;
+import com.changent.entities.CartListener;
+import com.changent.entities.Discount;
+import com.changent.entities.Item;
+import com.changent.valueobjects.Money;
+
+import java.util.*;
+
+/**
+ * Keeps the discounts of attached carts current as their lines change.
+ * <p>
+ * Promotions are indexed by the titles they reference. An attached cart's
+ * listener keeps the lines of indexed titles and, when one changes, evaluates
+ * only the promotions of that title and applies their discounts to the cart, so
+ * the cost of a change does not grow with the number of promotions, only with
+ * those sharing the changed title. Lines of titles no promotion mentions are
+ * not even kept.
+ * <p>
+ * Each promotion applies on its own: a line that qualifies for two promotions
+ * gets both discounts.
+ * <p>
+ * Attached carts are held weakly, so a cart dropped without being detached,
+ * such as one evicted from its repository, does not stay reachable from here.
+ */
+public class PromotionEngine {
+    public PromotionEngine(Collection<? extends Promotion> promotions) {
+        Objects.requireNonNull(promotions, "Promotions are invalid.");
+
+        Map<String, List<Promotion>> byTitle = new HashMap<>();
+        Set<String> ids = new HashSet<>();
+        for (Promotion promotion : promotions) {
+            Objects.requireNonNull(promotion, "Promotion is invalid.");
+            if (!ids.add(promotion.id())) throw new IllegalArgumentException("Duplicate promotion id " + promotion.id() + ".");
+
+            for (String title : promotion.titles()) byTitle.computeIfAbsent(title, key -> new ArrayList<>()).add(promotion);
+        }
+
+        byTitle.forEach((title, list) -> promotionsByTitle.put(title, list.toArray(new Promotion[0])));
+        this.promotionCount = ids.size();
+    }
+
+    private final Map<String, Promotion[]> promotionsByTitle = new HashMap<>();
+    private final int promotionCount;
+    // Trackers do not reference their carts, which would keep the weak keys alive.
+    private final Map<Cart, Tracker> trackers = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Applies the promotions to the cart and keeps them applied as it changes.
+     * The cart's existing lines are read once, so it should not be changed while
+     * it is attached.
+     */
+    public void attach(Cart cart) {
+        Objects.requireNonNull(cart, "Cart is invalid.");
+
+        Tracker tracker = new Tracker();
+        if (trackers.putIfAbsent(cart, tracker) != null) return;
+
+        cart.addListener(tracker);
+        tracker.load(cart);
+    }
+
+    /**
+     * Stops following the cart. Its discounts stay as they are.
+     */
+    public void detach(Cart cart) {
+        Tracker tracker = trackers.remove(cart);
+        if (tracker != null) cart.removeListener(tracker);
+    }
+
+    public int attachedCount() {
+        return trackers.size();
+    }
+
+    public int promotionCount() {
+        return promotionCount;
+    }
+
+    /**
+     * The lines of one cart that some promotion mentions, by title then product name.
+     * Events for a cart are handled one at a time, so a promotion sees its titles' lines together.
+     */
+    private final class Tracker implements CartListener, Promotion.Lines {
+        private final Map<String, Map<String, Item>> lines = new HashMap<>();
+
+        synchronized void load(Cart cart) {
+            Set<String> titles = new HashSet<>();
+            cart.forEachItem((productName, item) -> {
+                if (promotionsByTitle.containsKey(item.title())) {
+                    lines.computeIfAbsent(item.title(), key -> new HashMap<>()).put(productName, item);
+                    titles.add(item.title());
+                }
+            });
+            for (String title : titles) evaluate(cart, title);
+        }
+
+        @Override
+        public void added(Cart cart, String productName, Item line, int quantity) {
+            changed(cart, productName, line);
+        }
+
+        @Override
+        public void removed(Cart cart, String productName, Item line, int quantity) {
+            changed(cart, productName, line);
+        }
+
+        @Override
+        public void repriced(Cart cart, String productName, Item line, Money previousPrice) {
+            changed(cart, productName, line);
+        }
+
+        private synchronized void changed(Cart cart, String productName, Item line) {
+            String title = line.title();
+            if (!promotionsByTitle.containsKey(title)) return;
+
+            if (line.quantity() == 0) {
+                Map<String, Item> titleLines = lines.get(title);
+                if (titleLines != null) {
+                    titleLines.remove(productName);
+                    if (titleLines.isEmpty()) lines.remove(title);
+                }
+            } else {
+                lines.computeIfAbsent(title, key -> new HashMap<>(2)).put(productName, line);
+            }
+
+            evaluate(cart, title);
+        }
+
+        private void evaluate(Cart cart, String title) {
+            for (Promotion promotion : promotionsByTitle.get(title)) {
+                Money amount = Money.ofCents(promotion.discountInCents(this));
+                cart.applyDiscount(new Discount(promotion.id(), promotion.titles().get(0), amount));
+            }
+        }
+
+        @Override
+        public int quantityOf(String title) {
+            Map<String, Item> titleLines = lines.get(title);
+            if (titleLines == null) return 0;
+
+            int quantity = 0;
+            for (Item item : titleLines.values()) quantity += item.quantity();
+            return quantity;
+        }
+
+        @Override
+        public long unitCentsOf(String title) {
+            Map<String, Item> titleLines = lines.get(title);
+            if (titleLines == null) return 0;
+
+            long cents = Long.MAX_VALUE;
+            for (Item item : titleLines.values()) cents = Math.min(cents, item.price().cents());
+            return cents;
+        }
+    }
+}
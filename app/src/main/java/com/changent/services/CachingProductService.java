@@ -0,0 +1,130 @@
+package com.changent.services;
+
+import com.changent.entities.Product;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decorates a ProductService with a bounded, least recently used cache.
+ * Found products are kept for the ttl, not found products for the
+ * (usually shorter) notFoundTtl.
+ * When the cache is full the least recently used title is evicted.
+ */
+public class CachingProductService implements ProductService {
+    public CachingProductService(ProductService delegate, int maxEntries, Duration ttl, Duration notFoundTtl) {
+        this(delegate, maxEntries, ttl, notFoundTtl, Clock.systemUTC());
+    }
+
+    CachingProductService(ProductService delegate, int maxEntries, Duration ttl, Duration notFoundTtl, Clock clock) {
+        Objects.requireNonNull(delegate, "ProductService is invalid.");
+        Objects.requireNonNull(ttl, "Ttl is invalid.");
+        Objects.requireNonNull(notFoundTtl, "Not found ttl is invalid.");
+        Objects.requireNonNull(clock, "Clock is invalid.");
+
+        if (maxEntries < 1) throw new IllegalArgumentException("Max entries is invalid.");
+        if (ttl.isNegative()) throw new IllegalArgumentException("Ttl is invalid.");
+        if (notFoundTtl.isNegative()) throw new IllegalArgumentException("Not found ttl is invalid.");
+
+        this.delegate = delegate;
+        this.ttlMillis = ttl.toMillis();
+        this.notFoundTtlMillis = notFoundTtl.toMillis();
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= maxEntries) return false;
+
+                evictions.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    private final ProductService delegate;
+    private final long ttlMillis;
+    private final long notFoundTtlMillis;
+    private final Clock clock;
+    private final LinkedHashMap<String, Entry> entries;
+    // Bumped by each invalidation, guarded by entries.
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private record Entry(Optional<Product> product, long expiresAt) {}
+
+    /**
+     * Returns the cached result for the title when it has not expired.
+     * Otherwise, the delegate is called and its result, found or not, is cached.
+     * The delegate is called outside the cache lock so a slow lookup does not
+     * block lookups of other titles. A result is not cached if the cache was
+     * invalidated while it was looked up, as it may predate the invalidation.
+     */
+    @Override
+    public Optional<Product> getBy(String title) {
+        long now = clock.millis();
+        long lookedUpIn;
+
+        synchronized (entries) {
+            Entry entry = entries.get(title);
+
+            if (entry != null && entry.expiresAt() > now) {
+                hits.incrementAndGet();
+                return entry.product();
+            }
+
+            if (entry != null) entries.remove(title);
+            lookedUpIn = generation;
+        }
+
+        misses.incrementAndGet();
+        Optional<Product> result = delegate.getBy(title);
+        // From when the answer arrived, so a slow lookup does not shorten its entry's life.
+        long expiresAt = clock.millis() + (result.isPresent() ? ttlMillis : notFoundTtlMillis);
+
+        synchronized (entries) {
+            if (generation == lookedUpIn) entries.put(title, new Entry(result, expiresAt));
+        }
+
+        return result;
+    }
+
+    public void invalidate(String title) {
+        synchronized (entries) {
+            entries.remove(title);
+            generation++;
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            generation++;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long hitCount() {
+        return hits.get();
+    }
+
+    public long missCount() {
+        return misses.get();
+    }
+
+    public long evictionCount() {
+        return evictions.get();
+    }
+}
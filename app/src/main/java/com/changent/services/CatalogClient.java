@@ -0,0 +1,20 @@
+package com.changent.services;
+
+import com.changent.entities.Product;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A remote catalog that tells a product it does not have from one it could not
+ * look up, which ProductService, returning empty for both, does not.
+ */
+public interface CatalogClient {
+    /**
+     * Looks the product up, giving up after the timeout. Completes empty if the
+     * catalog has no such product, and with a ProductUnavailableException if it
+     * could not be asked or did not answer in time.
+     */
+    CompletableFuture<Optional<Product>> fetch(String productName, Duration timeout);
+}
@@ -0,0 +1,192 @@
+package com.changent.services;
+
+import com.changent.entities.Product;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stops calling a failing catalog so callers are not held up by requests that are
+ * bound to fail.
+ * <p>
+ * The outcomes of the last windowSize lookups are kept. Once the window is full and
+ * the share of failures in it reaches the threshold, the circuit opens: lookups fail
+ * at once with a CircuitOpenException, or as a ProductService are answered by the
+ * fallback. After openDuration one probe lookup is let through (half open); if it
+ * answers, the circuit closes with an empty window, otherwise it opens again.
+ * <p>
+ * Only a ProductUnavailableException, or another exception, counts as a failure.
+ * A product the catalog does not have is an answer.
+ */
+public class CircuitBreakerProductService implements ProductService, CatalogClient {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private enum Permit { REJECTED, CALL, PROBE }
+
+    /**
+     * A breaker that fails fast while open: getBy returns empty without asking the catalog.
+     */
+    public CircuitBreakerProductService(CatalogClient upstream, int windowSize, double failureRateThreshold, Duration openDuration, Duration callTimeout) {
+        this(upstream, windowSize, failureRateThreshold, openDuration, callTimeout, productName -> Optional.empty());
+    }
+
+    /**
+     * A breaker whose getBy answers from the fallback, e.g. a MappedCatalogProductService
+     * over the last catalog snapshot, while open or when a lookup fails.
+     */
+    public CircuitBreakerProductService(CatalogClient upstream, int windowSize, double failureRateThreshold, Duration openDuration, Duration callTimeout, ProductService fallback) {
+        this(upstream, windowSize, failureRateThreshold, openDuration, callTimeout, fallback, Clock.systemUTC());
+    }
+
+    CircuitBreakerProductService(CatalogClient upstream, int windowSize, double failureRateThreshold, Duration openDuration, Duration callTimeout, ProductService fallback, Clock clock) {
+        Objects.requireNonNull(upstream, "CatalogClient is invalid.");
+        Objects.requireNonNull(openDuration, "Open duration is invalid.");
+        Objects.requireNonNull(callTimeout, "Call timeout is invalid.");
+        Objects.requireNonNull(fallback, "Fallback is invalid.");
+        Objects.requireNonNull(clock, "Clock is invalid.");
+
+        if (windowSize < 1) throw new IllegalArgumentException("Window size is invalid.");
+        if (!(failureRateThreshold > 0 && failureRateThreshold <= 1))
+            throw new IllegalArgumentException("Failure rate threshold is invalid.");
+        if (openDuration.isNegative()) throw new IllegalArgumentException("Open duration is invalid.");
+        if (callTimeout.isNegative() || callTimeout.isZero()) throw new IllegalArgumentException("Call timeout is invalid.");
+
+        this.upstream = upstream;
+        this.outcomes = new boolean[windowSize];
+        this.failuresToOpen = (int) Math.ceil(failureRateThreshold * windowSize);
+        this.openMillis = openDuration.toMillis();
+        this.callTimeout = callTimeout;
+        this.fallback = fallback;
+        this.clock = clock;
+    }
+
+    private final CatalogClient upstream;
+    private final int failuresToOpen;
+    private final long openMillis;
+    private final Duration callTimeout;
+    private final ProductService fallback;
+    private final Clock clock;
+
+    // Guarded by this. A ring of the last outcomes, true for a failure.
+    private final boolean[] outcomes;
+    private int next;
+    private int recorded;
+    private int failures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probing;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    @Override
+    public Optional<Product> getBy(String productName) {
+        try {
+            return fetch(productName, callTimeout).join();
+        } catch (CompletionException e) {
+            fallbacks.increment();
+            return fallback.getBy(productName);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Optional<Product>> getByAsync(String productName) {
+        return fetch(productName, callTimeout).exceptionallyCompose(e -> {
+            fallbacks.increment();
+            return fallback.getByAsync(productName);
+        });
+    }
+
+    /**
+     * Looks the product up, unless the circuit is open, when it fails at once with a CircuitOpenException.
+     */
+    @Override
+    public CompletableFuture<Optional<Product>> fetch(String productName, Duration timeout) {
+        Permit permit = acquire();
+        if (permit == Permit.REJECTED) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(new CircuitOpenException("Catalog circuit is open; not looking up " + productName + "."));
+        }
+
+        CompletableFuture<Optional<Product>> lookup;
+        try {
+            lookup = upstream.fetch(productName, timeout);
+        } catch (RuntimeException e) {
+            lookup = CompletableFuture.failedFuture(e);
+        }
+
+        return lookup.whenComplete((product, e) -> record(permit, e != null));
+    }
+
+    public synchronized State state() {
+        // An open circuit whose time is up lets the next lookup probe.
+        if (state == State.OPEN && clock.millis() - openedAt >= openMillis) return State.HALF_OPEN;
+
+        return state;
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    public long fallbackCount() {
+        return fallbacks.sum();
+    }
+
+    private synchronized Permit acquire() {
+        if (state == State.CLOSED) return Permit.CALL;
+
+        if (state == State.OPEN) {
+            if (clock.millis() - openedAt < openMillis) return Permit.REJECTED;
+            state = State.HALF_OPEN;
+        }
+
+        if (probing) return Permit.REJECTED;
+        probing = true;
+        return Permit.PROBE;
+    }
+
+    private synchronized void record(Permit permit, boolean failed) {
+        if (permit == Permit.PROBE) {
+            probing = false;
+            if (failed) {
+                open();
+            } else {
+                state = State.CLOSED;
+                clearWindow();
+            }
+            return;
+        }
+
+        // Lookups that were under way when the circuit opened are not counted.
+        if (state != State.CLOSED) return;
+
+        if (recorded == outcomes.length) {
+            if (outcomes[next]) failures--;
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failed;
+        if (failed) failures++;
+        next = (next + 1) % outcomes.length;
+
+        if (recorded == outcomes.length && failures >= failuresToOpen) open();
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.millis();
+        clearWindow();
+    }
+
+    private void clearWindow() {
+        next = 0;
+        recorded = 0;
+        failures = 0;
+    }
+}
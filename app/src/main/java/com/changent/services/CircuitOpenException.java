@@ -0,0 +1,12 @@
+package com.changent.services;
+
+/**
+ * A lookup was not tried because the circuit breaker in front of the catalog is open.
+ */
+public class CircuitOpenException extends ProductUnavailableException {
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,113 @@
+package com.changent.services;
+
+import com.changent.entities.Product;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decorates a ProductService so that concurrent lookups of the same title
+ * share a single in-flight call to the delegate.
+ * Every waiter gets the result of that call. Once it completes, the next
+ * lookup of the title calls the delegate again; this is not a cache.
+ */
+public class CoalescingProductService implements ProductService {
+    public CoalescingProductService(ProductService delegate) {
+        Objects.requireNonNull(delegate, "ProductService is invalid.");
+
+        this.delegate = delegate;
+    }
+
+    private final ProductService delegate;
+    private final ConcurrentHashMap<String, CompletableFuture<Optional<Product>>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong fetches = new AtomicLong();
+    private final AtomicLong collapsed = new AtomicLong();
+
+    @Override
+    public Optional<Product> getBy(String title) {
+        CompletableFuture<Optional<Product>> lookup = new CompletableFuture<>();
+        CompletableFuture<Optional<Product>> existing = inFlight.putIfAbsent(title, lookup);
+
+        if (existing != null) {
+            collapsed.incrementAndGet();
+            return await(existing);
+        }
+
+        fetches.incrementAndGet();
+        try {
+            Optional<Product> result = delegate.getBy(title);
+            lookup.complete(result);
+            return result;
+        } catch (Throwable e) {
+            // Errors too, so waiters are released rather than left hanging.
+            lookup.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(title, lookup);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Optional<Product>> getByAsync(String title) {
+        CompletableFuture<Optional<Product>> lookup = new CompletableFuture<>();
+        CompletableFuture<Optional<Product>> existing = inFlight.putIfAbsent(title, lookup);
+
+        if (existing != null) {
+            collapsed.incrementAndGet();
+            return existing.copy();
+        }
+
+        fetches.incrementAndGet();
+        CompletableFuture<Optional<Product>> call;
+        try {
+            call = delegate.getByAsync(title);
+        } catch (Throwable e) {
+            inFlight.remove(title, lookup);
+            lookup.completeExceptionally(e);
+            return lookup.copy();
+        }
+
+        call.whenComplete((result, e) -> {
+            inFlight.remove(title, lookup);
+
+            if (e != null) lookup.completeExceptionally(e);
+            else lookup.complete(result);
+        });
+
+        return lookup.copy();
+    }
+
+    private static Optional<Product> await(CompletableFuture<Optional<Product>> lookup) {
+        try {
+            return lookup.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * The number of lookups that actually reached the delegate.
+     */
+    public long fetchCount() {
+        return fetches.get();
+    }
+
+    /**
+     * The number of lookups that joined a call already in flight
+     * instead of reaching the delegate.
+     */
+    public long collapsedCount() {
+        return collapsed.get();
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+}
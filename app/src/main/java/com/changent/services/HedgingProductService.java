@@ -0,0 +1,212 @@
+package com.changent.services;
+
+import com.changent.entities.Product;
+import com.changent.metrics.Histogram;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cuts the tail latency of a catalog by hedging: when a lookup has not answered
+ * within the hedge delay, a second request is sent and whichever answers first is
+ * used, and the other is cancelled where the upstream allows. A request that fails
+ * before the delay is hedged at once. At most two requests are made per lookup.
+ * <p>
+ * The hedge delay is the chosen percentile of recent lookup latencies, re-read
+ * every 256 answers, so only the slowest few percent of lookups are hedged and the
+ * extra load stays that small. Until enough lookups have answered, the initial
+ * delay is used.
+ * <p>
+ * Every lookup has a deadline, covering all its requests, after which it fails.
+ * Callers pass their own with fetch or getBy(productName, deadline); plain getBy
+ * uses the default one. As a ProductService, a lookup that fails is not found.
+ */
+public class HedgingProductService implements ProductService, CatalogClient {
+    // Answers between re-reads of the hedge delay; also the fewest it is read from.
+    static final int WINDOW = 256;
+
+    // Shared by all instances; a lookup cancels its timers once answered, so they do not pile up.
+    static final ScheduledThreadPoolExecutor TIMERS = timers();
+
+    public HedgingProductService(CatalogClient upstream, double percentile, Duration initialDelay, Duration defaultDeadline) {
+        Objects.requireNonNull(upstream, "CatalogClient is invalid.");
+        Objects.requireNonNull(initialDelay, "Initial delay is invalid.");
+        Objects.requireNonNull(defaultDeadline, "Default deadline is invalid.");
+
+        if (!(percentile > 0 && percentile < 100)) throw new IllegalArgumentException("Percentile is invalid.");
+        if (initialDelay.isNegative()) throw new IllegalArgumentException("Initial delay is invalid.");
+        if (defaultDeadline.isNegative() || defaultDeadline.isZero())
+            throw new IllegalArgumentException("Default deadline is invalid.");
+
+        this.upstream = upstream;
+        this.percentile = percentile;
+        this.hedgeDelayNanos = initialDelay.toNanos();
+        this.defaultDeadline = defaultDeadline;
+    }
+
+    private final CatalogClient upstream;
+    private final double percentile;
+    private final Duration defaultDeadline;
+
+    private volatile Histogram latencies = new Histogram();
+    private final AtomicLong answers = new AtomicLong();
+    private volatile long hedgeDelayNanos;
+
+    private final AtomicLong hedges = new AtomicLong();
+
+    @Override
+    public Optional<Product> getBy(String productName) {
+        return getBy(productName, defaultDeadline);
+    }
+
+    /**
+     * Looks the product up, returning empty if it is not found or cannot be found by the deadline.
+     */
+    public Optional<Product> getBy(String productName, Duration deadline) {
+        try {
+            return fetch(productName, deadline).join();
+        } catch (CompletionException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Optional<Product>> getByAsync(String productName) {
+        return fetch(productName, defaultDeadline).exceptionally(e -> Optional.empty());
+    }
+
+    /**
+     * Looks the product up, hedged, failing with a ProductUnavailableException
+     * when no request has answered by the deadline.
+     */
+    @Override
+    public CompletableFuture<Optional<Product>> fetch(String productName, Duration deadline) {
+        Objects.requireNonNull(productName, "Product name is invalid.");
+        Objects.requireNonNull(deadline, "Deadline is invalid.");
+
+        Lookup lookup = new Lookup(productName, System.nanoTime() + deadline.toNanos());
+        lookup.attempt();
+
+        if (!lookup.result.isDone()) {
+            lookup.schedule(lookup::hedge, hedgeDelayNanos);
+            lookup.schedule(() -> lookup.result.completeExceptionally(
+                    new ProductUnavailableException("No answer for " + productName + " by the deadline.")), deadline.toNanos());
+        }
+
+        return lookup.result;
+    }
+
+    public Duration hedgeDelay() {
+        return Duration.ofNanos(hedgeDelayNanos);
+    }
+
+    public long hedgeCount() {
+        return hedges.get();
+    }
+
+    private void recordAnswer(long latencyNanos) {
+        Histogram window = latencies;
+        window.record(latencyNanos);
+
+        // Swapped rather than reset, which racing records could leave half cleared.
+        if (answers.incrementAndGet() % WINDOW == 0) {
+            latencies = new Histogram();
+            hedgeDelayNanos = window.valueAtPercentile(percentile);
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor timers() {
+        ScheduledThreadPoolExecutor timers = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "hedging-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timers.setRemoveOnCancelPolicy(true);
+        return timers;
+    }
+
+    /**
+     * One lookup and its requests: the first, and the hedge if one is sent.
+     */
+    private final class Lookup {
+        Lookup(String productName, long deadlineNanos) {
+            this.productName = productName;
+            this.deadlineNanos = deadlineNanos;
+
+            // Once answered, requests still running and timers still pending are no longer wanted.
+            result.whenComplete((product, e) -> {
+                requests.forEach(request -> request.cancel(true));
+                timers.forEach(timer -> timer.cancel(false));
+            });
+        }
+
+        private final String productName;
+        private final long deadlineNanos;
+        private final CompletableFuture<Optional<Product>> result = new CompletableFuture<>();
+        private final CopyOnWriteArrayList<CompletableFuture<Optional<Product>>> requests = new CopyOnWriteArrayList<>();
+        private final CopyOnWriteArrayList<ScheduledFuture<?>> timers = new CopyOnWriteArrayList<>();
+        private final AtomicBoolean hedged = new AtomicBoolean();
+        private final AtomicInteger running = new AtomicInteger();
+
+        void attempt() {
+            long start = System.nanoTime();
+            long remaining = deadlineNanos - start;
+            if (remaining <= 0) {
+                if (running.get() == 0)
+                    result.completeExceptionally(new ProductUnavailableException("No time left to look up " + productName + "."));
+                return;
+            }
+
+            running.incrementAndGet();
+            CompletableFuture<Optional<Product>> request;
+            try {
+                request = upstream.fetch(productName, Duration.ofNanos(remaining));
+            } catch (RuntimeException e) {
+                request = CompletableFuture.failedFuture(e);
+            }
+
+            requests.add(request);
+            request.whenComplete((product, e) -> {
+                if (e == null) {
+                    recordAnswer(System.nanoTime() - start);
+                    result.complete(product);
+                    return;
+                }
+
+                hedge();
+                if (running.decrementAndGet() == 0) result.completeExceptionally(unavailable(e));
+            });
+            if (result.isDone()) request.cancel(true);
+        }
+
+        void schedule(Runnable task, long delayNanos) {
+            ScheduledFuture<?> timer = TIMERS.schedule(task, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+            timers.add(timer);
+            if (result.isDone()) timer.cancel(false);
+        }
+
+        void hedge() {
+            if (result.isDone() || !hedged.compareAndSet(false, true)) return;
+
+            hedges.incrementAndGet();
+            attempt();
+        }
+
+        private ProductUnavailableException unavailable(Throwable e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof ProductUnavailableException unavailable) return unavailable;
+
+            return new ProductUnavailableException("Could not look up " + productName + ".", cause);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.changent.services;
+
+import com.changent.entities.Product;
+import com.changent.metrics.Histogram;
+import com.changent.metrics.MetricsRegistry;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decorates a ProductService, recording how long each lookup takes in a
+ * histogram by its outcome: found, not found, or failed with an exception.
+ * Asynchronous lookups are timed until their future completes.
+ * <p>
+ * When the delegate is a CatalogClient, such as ProductServiceImpl, every lookup
+ * goes through its fetch, within the timeout, so a product that could not be
+ * looked up counts as an error rather than as not found; getBy and getByAsync
+ * then return empty for it. Fallbacks that answer in place of a failed lookup,
+ * e.g. a CircuitBreakerProductService's, are therefore not used: decorate the
+ * catalog and put the fallback outside. Otherwise fetch goes through getByAsync,
+ * which cannot tell the two apart.
+ */
+public class InstrumentedProductService implements ProductService, CatalogClient {
+    public static final String FOUND_NANOS = "catalog.lookup.found.nanos";
+    public static final String NOT_FOUND_NANOS = "catalog.lookup.notFound.nanos";
+    public static final String ERROR_NANOS = "catalog.lookup.error.nanos";
+
+    public InstrumentedProductService(ProductService delegate, MetricsRegistry registry) {
+        this(delegate, registry, ProductServiceImpl.DEFAULT_REQUEST_TIMEOUT);
+    }
+
+    public InstrumentedProductService(ProductService delegate, MetricsRegistry registry, Duration timeout) {
+        Objects.requireNonNull(delegate, "ProductService is invalid.");
+        Objects.requireNonNull(registry, "MetricsRegistry is invalid.");
+        Objects.requireNonNull(timeout, "Timeout is invalid.");
+
+        if (timeout.isNegative() || timeout.isZero()) throw new IllegalArgumentException("Timeout is invalid.");
+
+        this.delegate = delegate;
+        this.timeout = timeout;
+        this.catalog = delegate instanceof CatalogClient client ? client : null;
+        this.found = registry.histogram(FOUND_NANOS);
+        this.notFound = registry.histogram(NOT_FOUND_NANOS);
+        this.error = registry.histogram(ERROR_NANOS);
+    }
+
+    private final ProductService delegate;
+    private final Duration timeout;
+    private final CatalogClient catalog;
+    private final Histogram found;
+    private final Histogram notFound;
+    private final Histogram error;
+
+    @Override
+    public Optional<Product> getBy(String title) {
+        if (catalog != null) {
+            try {
+                return fetch(title, timeout).join();
+            } catch (CompletionException e) {
+                return Optional.empty();
+            }
+        }
+
+        long start = System.nanoTime();
+
+        try {
+            Optional<Product> result = delegate.getBy(title);
+            record(result, null, start);
+            return result;
+        } catch (RuntimeException e) {
+            record(null, e, start);
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Optional<Product>> getByAsync(String title) {
+        if (catalog != null) return fetch(title, timeout).exceptionally(e -> Optional.empty());
+
+        long start = System.nanoTime();
+
+        try {
+            return delegate.getByAsync(title).whenComplete((result, e) -> record(result, e, start));
+        } catch (RuntimeException e) {
+            record(null, e, start);
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Optional<Product>> fetch(String productName, Duration timeout) {
+        Objects.requireNonNull(timeout, "Timeout is invalid.");
+        long start = System.nanoTime();
+
+        CompletableFuture<Optional<Product>> lookup;
+        try {
+            lookup = catalog != null
+                    ? catalog.fetch(productName, timeout)
+                    : delegate.getByAsync(productName).orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) {
+            record(null, e, start);
+            return CompletableFuture.failedFuture(ProductUnavailableException.of(productName, e));
+        }
+
+        return lookup.handle((result, e) -> {
+            record(result, e, start);
+            if (e != null) throw ProductUnavailableException.of(productName, e);
+            return result;
+        });
+    }
+
+    private void record(Optional<Product> result, Throwable failure, long start) {
+        long elapsed = System.nanoTime() - start;
+
+        if (failure != null) {
+            error.record(elapsed);
+        } else if (result.isPresent()) {
+            found.record(elapsed);
+        } else {
+            notFound.record(elapsed);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.changent.services;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executor for blocking catalog lookups.
+ * Lookups spend nearly all their time waiting on I/O, so a thread per task is
+ * used: a virtual thread on runtimes that have them, otherwise a cached pool
+ * of daemon threads.
+ */
+final class LookupExecutor {
+    private LookupExecutor() {}
+
+    private static final ExecutorService SHARED = create();
+
+    static ExecutorService shared() {
+        return SHARED;
+    }
+
+    private static ExecutorService create() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "product-lookup");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.changent.services;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Layout of a catalog snapshot file. All numbers are big endian.
+ *
+ * <pre>
+ * header   int magic, short version, short reserved, int productCount, int slotCount
+ * index    slotCount x int record offset, 0 marks an empty slot
+ * records  long priceInCents, short nameLength, name bytes, short titleLength, title bytes
+ * </pre>
+ *
+ * The index is an open addressing hash table of the UTF-8 product names
+ * (the names used to look products up, e.g. "cheerios"), probed linearly.
+ * Names and titles are UTF-8.
+ */
+final class MappedCatalog {
+    private MappedCatalog() {}
+
+    static final int MAGIC = 0x43415431; // "CAT1"
+    static final short VERSION = 1;
+
+    static final int HEADER_SIZE = 16;
+    static final int PRODUCT_COUNT_OFFSET = 8;
+    static final int SLOT_COUNT_OFFSET = 12;
+    static final int SLOT_SIZE = Integer.BYTES;
+
+    static final int EMPTY_SLOT = 0;
+
+    static int slotCountFor(int productCount) {
+        int slots = Integer.highestOneBit(Math.max(1, productCount) * 2 - 1) << 1;
+        return Math.max(slots, 2);
+    }
+
+    static int hash(byte[] name) {
+        int hash = 0x811c9dc5;
+
+        for (byte b : name) {
+            hash ^= b & 0xff;
+            hash *= 0x01000193;
+        }
+
+        return hash;
+    }
+
+    static int slotOf(int hash, int slotCount) {
+        return (hash ^ (hash >>> 16)) & (slotCount - 1);
+    }
+
+    static boolean nameMatches(ByteBuffer catalog, int nameOffset, byte[] name) {
+        if (catalog.getShort(nameOffset) != name.length) return false;
+
+        int bytesOffset = nameOffset + Short.BYTES;
+        for (int i = 0; i < name.length; i++) {
+            if (catalog.get(bytesOffset + i) != name[i]) return false;
+        }
+
+        return true;
+    }
+
+    static String stringAt(ByteBuffer catalog, int offset) {
+        int length = catalog.getShort(offset);
+        byte[] bytes = new byte[length];
+        catalog.get(offset + Short.BYTES, bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,131 @@
+package com.changent.services;
+
+import com.changent.entities.Product;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static com.changent.services.MappedCatalog.*;
+
+/**
+ * Writes catalog snapshot files read by MappedCatalogProductService.
+ */
+public final class MappedCatalogBuilder {
+    private MappedCatalogBuilder() {}
+
+    /**
+     * Builds a snapshot from a directory of product JSON files.
+     * Each product is named after its file, so "cheerios.json" is
+     * looked up as "cheerios".
+     */
+    public static void fromJsonDirectory(Path directory, Path catalogFile) throws IOException {
+        Objects.requireNonNull(directory, "Directory is invalid.");
+
+        SortedMap<String, Product> products = new TreeMap<>();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(MappedCatalogBuilder::isJson).toList()) {
+                try (InputStream json = Files.newInputStream(file)) {
+                    products.put(nameOf(file), Product.fromJson(json));
+                }
+            }
+        }
+
+        write(products, catalogFile);
+    }
+
+    /**
+     * Builds a snapshot of the products, keyed by the name they are looked up by.
+     * The file is written next to its destination and then moved into place, so
+     * readers never map a partially written catalog.
+     */
+    public static void write(Map<String, Product> productsByName, Path catalogFile) throws IOException {
+        Objects.requireNonNull(productsByName, "Products are invalid.");
+        Objects.requireNonNull(catalogFile, "Catalog file is invalid.");
+
+        int productCount = productsByName.size();
+        int slotCount = slotCountFor(productCount);
+
+        long size = HEADER_SIZE + (long) slotCount * SLOT_SIZE;
+        for (Map.Entry<String, Product> entry : productsByName.entrySet()) {
+            size += recordSize(entry.getKey(), entry.getValue());
+        }
+        if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("Catalog is too large to be mapped.");
+
+        ByteBuffer catalog = ByteBuffer.allocate((int) size);
+        catalog.putInt(MAGIC)
+                .putShort(VERSION)
+                .putShort((short) 0)
+                .putInt(productCount)
+                .putInt(slotCount);
+
+        int recordOffset = HEADER_SIZE + slotCount * SLOT_SIZE;
+        for (Map.Entry<String, Product> entry : productsByName.entrySet()) {
+            byte[] name = utf8(entry.getKey());
+            byte[] title = utf8(entry.getValue().title());
+
+            int slot = slotOf(hash(name), slotCount);
+            while (catalog.getInt(HEADER_SIZE + slot * SLOT_SIZE) != EMPTY_SLOT) {
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            catalog.putInt(HEADER_SIZE + slot * SLOT_SIZE, recordOffset);
+
+            catalog.position(recordOffset);
+            catalog.putLong(entry.getValue().price().cents())
+                    .putShort((short) name.length)
+                    .put(name)
+                    .putShort((short) title.length)
+                    .put(title);
+            recordOffset = catalog.position();
+        }
+
+        Path directory = catalogFile.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, catalogFile.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            catalog.rewind();
+            while (catalog.hasRemaining()) channel.write(catalog);
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, catalogFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long recordSize(String name, Product product) {
+        return Long.BYTES + Short.BYTES + checkedLength(name) + Short.BYTES + checkedLength(product.title());
+    }
+
+    private static int checkedLength(String value) {
+        int length = utf8(value).length;
+        if (length > Short.MAX_VALUE) throw new IllegalArgumentException("Name or title is too long: " + value);
+
+        return length;
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean isJson(Path file) {
+        return Files.isRegularFile(file) && file.getFileName().toString().endsWith(".json");
+    }
+
+    private static String nameOf(Path file) {
+        String fileName = file.getFileName().toString();
+
+        return fileName.substring(0, fileName.length() - ".json".length());
+    }
+}
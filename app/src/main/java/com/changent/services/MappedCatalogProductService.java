@@ -0,0 +1,135 @@
+package com.changent.services;
+
+import com.changent.entities.Product;
+import com.changent.entities.ProductDictionary;
+import com.changent.entities.ProductRegistry;
+import com.changent.valueobjects.Money;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+
+import static com.changent.services.MappedCatalog.*;
+
+/**
+ * Resolves products from a catalog snapshot file written by MappedCatalogBuilder.
+ * The file is memory mapped read only; a lookup probes the mapped index and
+ * decodes only the matching record, so nothing but that product reaches the heap
+ * and opening a catalog costs the same regardless of its size.
+ * Snapshots are limited to 2GB, the most a single mapping can address.
+ * As a ProductDictionary, a product's id is the offset of its record.
+ */
+public class MappedCatalogProductService implements ProductService, ProductDictionary {
+    private MappedCatalogProductService(ByteBuffer catalog) {
+        this.catalog = catalog;
+        this.productCount = catalog.getInt(PRODUCT_COUNT_OFFSET);
+        this.slotCount = catalog.getInt(SLOT_COUNT_OFFSET);
+    }
+
+    private final ByteBuffer catalog;
+    private final int productCount;
+    private final int slotCount;
+
+    // Computed on first use so that opening stays independent of the catalog size.
+    private volatile long fingerprint;
+    private volatile boolean fingerprinted;
+
+    public static MappedCatalogProductService open(Path catalogFile) throws IOException {
+        Objects.requireNonNull(catalogFile, "Catalog file is invalid.");
+
+        try (FileChannel channel = FileChannel.open(catalogFile, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Not a catalog file: " + catalogFile);
+
+            ByteBuffer catalog = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (catalog.getInt(0) != MAGIC) throw new IOException("Not a catalog file: " + catalogFile);
+            if (catalog.getShort(Integer.BYTES) != VERSION)
+                throw new IOException("Unsupported catalog version " + catalog.getShort(Integer.BYTES) + ": " + catalogFile);
+
+            return new MappedCatalogProductService(catalog);
+        }
+    }
+
+    @Override
+    public Optional<Product> getBy(String productName) {
+        int recordOffset = recordOffsetOf(productName);
+
+        if (recordOffset == EMPTY_SLOT) return Optional.empty();
+
+        long cents = catalog.getLong(recordOffset);
+        int nameOffset = recordOffset + Long.BYTES;
+        int titleOffset = nameOffset + Short.BYTES + catalog.getShort(nameOffset);
+
+        return Optional.of(ProductRegistry.productOf(stringAt(catalog, titleOffset), Money.ofCents(cents)));
+    }
+
+    public int size() {
+        return productCount;
+    }
+
+    @Override
+    public int idOf(String productName) {
+        int recordOffset = recordOffsetOf(productName);
+
+        return recordOffset == EMPTY_SLOT ? NOT_FOUND : recordOffset;
+    }
+
+    @Override
+    public String productNameOf(int id) {
+        return stringAt(catalog, nameOffsetOf(id));
+    }
+
+    @Override
+    public String titleOf(int id) {
+        int nameOffset = nameOffsetOf(id);
+
+        return stringAt(catalog, nameOffset + Short.BYTES + catalog.getShort(nameOffset));
+    }
+
+    /**
+     * A checksum of the whole snapshot, so it changes with any id, name, title or
+     * price. Covering only the index would let a re-priced or re-titled catalog
+     * pass for the one that encoded a cart.
+     */
+    @Override
+    public long fingerprint() {
+        if (!fingerprinted) {
+            CRC32C crc = new CRC32C();
+            crc.update(catalog.duplicate().clear());
+            fingerprint = crc.getValue();
+            fingerprinted = true;
+        }
+
+        return fingerprint;
+    }
+
+    private int nameOffsetOf(int id) {
+        if (id < HEADER_SIZE + slotCount * SLOT_SIZE || id >= catalog.capacity() - Long.BYTES)
+            throw new IllegalArgumentException("Unknown product id " + id + ".");
+
+        return id + Long.BYTES;
+    }
+
+    private int recordOffsetOf(String productName) {
+        byte[] name = productName.getBytes(StandardCharsets.UTF_8);
+        int slot = slotOf(hash(name), slotCount);
+
+        for (int probes = 0; probes < slotCount; probes++) {
+            int recordOffset = catalog.getInt(HEADER_SIZE + slot * SLOT_SIZE);
+
+            if (recordOffset == EMPTY_SLOT) return EMPTY_SLOT;
+            if (nameMatches(catalog, recordOffset + Long.BYTES, name)) return recordOffset;
+
+            slot = (slot + 1) & (slotCount - 1);
+        }
+
+        return EMPTY_SLOT;
+    }
+}
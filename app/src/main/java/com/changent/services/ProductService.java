@@ -3,8 +3,17 @@ package com.changent.services;
 import com.changent.entities.Product;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface ProductService {
     Optional<Product> getBy(String title);
 
+    /**
+     * Looks up the product without blocking the caller.
+     * By default the blocking getBy is run on the shared lookup executor,
+     * which uses virtual threads when the runtime provides them.
+     */
+    default CompletableFuture<Optional<Product>> getByAsync(String title) {
+        return CompletableFuture.supplyAsync(() -> getBy(title), LookupExecutor.shared());
+    }
 }
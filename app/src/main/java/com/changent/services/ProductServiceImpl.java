@@ -2,22 +2,163 @@ package com.changent.services;
 
 import com.changent.entities.Product;
 
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
 
-public class ProductServiceImpl implements ProductService {
+public class ProductServiceImpl implements ProductService, CatalogClient {
+    public ProductServiceImpl() {
+        this(DEFAULT_BASE_URL, DEFAULT_REQUEST_TIMEOUT);
+    }
+
+    public ProductServiceImpl(URI baseUrl, Duration requestTimeout) {
+        this(baseUrl, requestTimeout, SHARED_CLIENT);
+    }
+
+    public ProductServiceImpl(URI baseUrl, Duration requestTimeout, HttpClient client) {
+        Objects.requireNonNull(baseUrl, "Base URL is invalid.");
+        Objects.requireNonNull(requestTimeout, "Request timeout is invalid.");
+        Objects.requireNonNull(client, "HttpClient is invalid.");
+
+        if (requestTimeout.isNegative() || requestTimeout.isZero())
+            throw new IllegalArgumentException("Request timeout is invalid.");
+
+        this.baseUrl = asDirectory(baseUrl);
+        this.requestTimeout = requestTimeout;
+        this.client = client;
+    }
+
+    public static final URI DEFAULT_BASE_URL = URI.create("https://equalexperts.github.io/backend-take-home-test-data/");
+    public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+    // One client for every instance, so connections (and their TLS sessions) are pooled,
+    // kept alive and, against HTTP/2 servers, multiplexed across lookups.
+    private static final HttpClient SHARED_CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofSeconds(2))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    private final URI baseUrl;
+    private final Duration requestTimeout;
+    private final HttpClient client;
+
+    /**
+     * Looks the product up, returning empty if the catalog does not have it or
+     * could not be asked; lookUp tells the two apart.
+     */
     @Override
     public Optional<Product> getBy(String productName) {
         try {
-            URL url = new URL("https://equalexperts.github.io/backend-take-home-test-data/" + productName + ".json");
+            return lookUp(productName);
+        } catch (ProductUnavailableException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Looks the product up, blocking. Returns empty on a 404 or 410 and throws
+     * ProductUnavailableException on any other failure.
+     */
+    public Optional<Product> lookUp(String productName) {
+        // A name that makes no URL cannot be in the catalog.
+        if (!isValidName(productName)) return Optional.empty();
+
+        HttpResponse<byte[]> response;
+        try {
+            response = client.send(requestFor(productName), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProductUnavailableException("Interrupted looking up " + productName + ".", e);
+        } catch (IOException | RuntimeException e) {
+            throw new ProductUnavailableException("Could not look up " + productName + ".", e);
+        }
+
+        return strictProductFrom(productName, response);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Product>> getByAsync(String productName) {
+        return fetch(productName, requestTimeout).exceptionally(e -> Optional.empty());
+    }
+
+    /**
+     * Looks the product up within the timeout, or the request timeout if that is shorter.
+     * A 404 or 410 means the catalog has no such product; any other failure completes
+     * the future with a ProductUnavailableException. Cancelling the future aborts the request.
+     */
+    @Override
+    public CompletableFuture<Optional<Product>> fetch(String productName, Duration timeout) {
+        Objects.requireNonNull(timeout, "Timeout is invalid.");
+
+        if (!isValidName(productName)) return CompletableFuture.completedFuture(Optional.empty());
+        if (timeout.isNegative() || timeout.isZero())
+            return CompletableFuture.failedFuture(new ProductUnavailableException("No time left to look up " + productName + "."));
+
+        try {
+            Duration attemptTimeout = timeout.compareTo(requestTimeout) < 0 ? timeout : requestTimeout;
+
+            CompletableFuture<HttpResponse<byte[]>> send = client.sendAsync(requestFor(productName, attemptTimeout), HttpResponse.BodyHandlers.ofByteArray());
+            CompletableFuture<Optional<Product>> lookup = send.handle((response, e) -> {
+                if (e != null) throw new ProductUnavailableException("Could not look up " + productName + ".", e);
+
+                return strictProductFrom(productName, response);
+            });
 
-            Scanner scanner = new Scanner(url.openStream(), StandardCharsets.UTF_8);
-            String json = scanner.useDelimiter("\\A").next();
-            return Optional.of(Product.fromJson(json));
+            // Cancelling a dependent stage, e.g. a hedge's loser, need not abort the exchange it
+            // depends on; only the JDK's own client does. Cancel the send itself.
+            lookup.whenComplete((product, e) -> {
+                if (lookup.isCancelled()) send.cancel(true);
+            });
+            return lookup;
         } catch (Exception e) {
-            return Optional.empty();
+            return CompletableFuture.failedFuture(new ProductUnavailableException("Could not look up " + productName + ".", e));
+        }
+    }
+
+    private boolean isValidName(String productName) {
+        try {
+            baseUrl.resolve(productName + ".json");
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private HttpRequest requestFor(String productName) {
+        return requestFor(productName, requestTimeout);
+    }
+
+    private HttpRequest requestFor(String productName, Duration timeout) {
+        return HttpRequest.newBuilder(baseUrl.resolve(productName + ".json"))
+                .timeout(timeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+    }
+
+    private static Optional<Product> strictProductFrom(String productName, HttpResponse<byte[]> response) {
+        int status = response.statusCode();
+
+        if (status == 404 || status == 410) return Optional.empty();
+        if (status != 200) throw new ProductUnavailableException("Catalog answered " + status + " for " + productName + ".");
+
+        try {
+            return Optional.of(Product.fromJson(response.body()));
+        } catch (RuntimeException e) {
+            throw new ProductUnavailableException("Catalog sent an invalid product for " + productName + ".", e);
         }
     }
+
+    private static URI asDirectory(URI baseUrl) {
+        String url = baseUrl.toString();
+
+        return url.endsWith("/") ? baseUrl : URI.create(url + "/");
+    }
 }
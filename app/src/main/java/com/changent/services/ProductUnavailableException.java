@@ -0,0 +1,30 @@
+package com.changent.services;
+
+import java.util.concurrent.CompletionException;
+
+/**
+ * The catalog could not say whether a product exists: it failed, timed out or
+ * answered with something other than the product or "not found".
+ */
+public class ProductUnavailableException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public ProductUnavailableException(String message) {
+        super(message);
+    }
+
+    public ProductUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * The failure of a lookup of the product as a ProductUnavailableException,
+     * unwrapping a CompletionException and keeping one that already is.
+     */
+    static ProductUnavailableException of(String productName, Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        if (cause instanceof ProductUnavailableException unavailable) return unavailable;
+
+        return new ProductUnavailableException("Could not look up " + productName + ".", cause);
+    }
+}
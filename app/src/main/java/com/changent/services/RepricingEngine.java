@@ -0,0 +1,167 @@
+package com.changent.services;
+
+import com.changent.entities.Cart;
+import com.changent.entities.CartListener;
+import com.changent.entities.Item;
+import com.changent.entities.Product;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Moves live carts to new catalog prices.
+ * <p>
+ * Tracked carts are indexed by the titles of their lines, kept current by a
+ * CartListener as lines are added, so a price change only visits the carts
+ * holding the product. The affected carts are repriced in parallel on a
+ * ForkJoinPool; each cart adjusts its totals by the price difference of its
+ * lines rather than summing them again.
+ * <p>
+ * A cart stays indexed under a title until it is untracked, even once it no
+ * longer holds the product; repricing it for that title is then a no-op.
+ */
+public class RepricingEngine {
+    // Carts repriced by one task before it is split; a reprice is a few map operations.
+    private static final int CARTS_PER_TASK = 512;
+
+    public RepricingEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public RepricingEngine(ForkJoinPool pool) {
+        Objects.requireNonNull(pool, "ForkJoinPool is invalid.");
+
+        this.pool = pool;
+    }
+
+    private final ForkJoinPool pool;
+    private final ConcurrentHashMap<String, Set<Cart>> cartsByTitle = new ConcurrentHashMap<>();
+    private final Map<Cart, Indexer> indexers = new ConcurrentHashMap<>();
+
+    public void track(Cart cart) {
+        Objects.requireNonNull(cart, "Cart is invalid.");
+
+        Indexer indexer = new Indexer();
+        if (indexers.putIfAbsent(cart, indexer) != null) return;
+
+        // Listen first, so a line added while the cart is read is indexed either way.
+        cart.addListener(indexer);
+        cart.forEachItem((productName, item) -> indexer.index(item.title(), cart));
+    }
+
+    public void untrack(Cart cart) {
+        Indexer indexer = indexers.remove(cart);
+        if (indexer == null) return;
+
+        cart.removeListener(indexer);
+        for (String title : indexer.titles) {
+            Set<Cart> carts = cartsByTitle.get(title);
+            if (carts != null) carts.remove(cart);
+        }
+    }
+
+    public int trackedCount() {
+        return indexers.size();
+    }
+
+    /**
+     * Reprices every tracked cart holding any of the products to that product's price.
+     * Products are matched to lines by title; of several products with one title, the last is used.
+     */
+    public RepricingReport reprice(Collection<Product> changedProducts) {
+        Objects.requireNonNull(changedProducts, "Products are invalid.");
+
+        long start = System.nanoTime();
+
+        Map<String, Product> productsByTitle = new HashMap<>();
+        for (Product product : changedProducts) productsByTitle.put(product.title(), product);
+
+        Map<Cart, List<Product>> productsByCart = new IdentityHashMap<>();
+        productsByTitle.forEach((title, product) -> {
+            for (Cart cart : cartsByTitle.getOrDefault(title, Set.of())) {
+                productsByCart.computeIfAbsent(cart, key -> new ArrayList<>(1)).add(product);
+            }
+        });
+
+        Repricing repricing = new Repricing(new ArrayList<>(productsByCart.entrySet()), 0, productsByCart.size());
+        pool.invoke(repricing);
+
+        return new RepricingReport(
+                productsByTitle.size(),
+                productsByCart.size(),
+                repricing.cartsRepriced.intValue(),
+                repricing.linesRepriced.sum(),
+                Duration.ofNanos(System.nanoTime() - start)
+        );
+    }
+
+    /**
+     * Indexes a tracked cart's new lines, remembering their titles for untrack.
+     */
+    private final class Indexer implements CartListener {
+        private final Set<String> titles = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void added(Cart cart, String productName, Item line, int quantity) {
+            if (line.quantity() == quantity) index(line.title(), cart);
+        }
+
+        @Override
+        public void removed(Cart cart, String productName, Item line, int quantity) {
+        }
+
+        void index(String title, Cart cart) {
+            if (titles.add(title)) cartsByTitle.computeIfAbsent(title, key -> ConcurrentHashMap.newKeySet()).add(cart);
+        }
+    }
+
+    private static final class Repricing extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        Repricing(List<Map.Entry<Cart, List<Product>>> carts, int from, int to) {
+            this(carts, from, to, new LongAdder(), new LongAdder());
+        }
+
+        private Repricing(List<Map.Entry<Cart, List<Product>>> carts, int from, int to, LongAdder cartsRepriced, LongAdder linesRepriced) {
+            this.carts = carts;
+            this.from = from;
+            this.to = to;
+            this.cartsRepriced = cartsRepriced;
+            this.linesRepriced = linesRepriced;
+        }
+
+        private final List<Map.Entry<Cart, List<Product>>> carts;
+        private final int from;
+        private final int to;
+        private final LongAdder cartsRepriced;
+        private final LongAdder linesRepriced;
+
+        @Override
+        protected void compute() {
+            if (to - from > CARTS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(
+                        new Repricing(carts, from, middle, cartsRepriced, linesRepriced),
+                        new Repricing(carts, middle, to, cartsRepriced, linesRepriced)
+                );
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                Map.Entry<Cart, List<Product>> entry = carts.get(i);
+
+                int lines = 0;
+                for (Product product : entry.getValue()) lines += entry.getKey().reprice(product);
+
+                if (lines > 0) {
+                    cartsRepriced.increment();
+                    linesRepriced.add(lines);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.changent.services;
+
+import java.time.Duration;
+
+/**
+ * The outcome of a RepricingEngine run.
+ *
+ * @param productCount   the distinct changed products
+ * @param cartsExamined  the carts the index named for those products
+ * @param cartsRepriced  the carts that had at least one line repriced
+ * @param linesRepriced  the lines moved to a new price
+ * @param elapsed        the time taken, including the index lookup
+ */
+public record RepricingReport(int productCount, int cartsExamined, int cartsRepriced, long linesRepriced, Duration elapsed) {
+    public double cartsPerSecond() {
+        long nanos = Math.max(1, elapsed.toNanos());
+
+        return cartsExamined * 1_000_000_000.0 / nanos;
+    }
+}
@@ -0,0 +1,128 @@
+package com.changent.services;
+
+import com.changent.entities.Product;
+import com.changent.tracing.CatalogFetchEvent;
+import com.changent.tracing.Tracing;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decorates a ProductService, recording a CatalogFetch Flight Recorder event
+ * for the lookups Tracing.CATALOG samples. Asynchronous lookups are timed until
+ * their future completes. When no recording has the event enabled, a lookup is
+ * passed straight to the delegate.
+ * <p>
+ * When the delegate is a CatalogClient, such as ProductServiceImpl, sampled
+ * lookups go through its fetch, within the timeout, so one that could not be
+ * made is recorded as an error rather than as not found, and then returns empty.
+ */
+public class TracingProductService implements ProductService, CatalogClient {
+    public TracingProductService(ProductService delegate) {
+        this(delegate, ProductServiceImpl.DEFAULT_REQUEST_TIMEOUT);
+    }
+
+    public TracingProductService(ProductService delegate, Duration timeout) {
+        Objects.requireNonNull(delegate, "ProductService is invalid.");
+        Objects.requireNonNull(timeout, "Timeout is invalid.");
+
+        if (timeout.isNegative() || timeout.isZero()) throw new IllegalArgumentException("Timeout is invalid.");
+
+        this.delegate = delegate;
+        this.timeout = timeout;
+        this.catalog = delegate instanceof CatalogClient client ? client : null;
+    }
+
+    private final ProductService delegate;
+    private final Duration timeout;
+    private final CatalogClient catalog;
+
+    @Override
+    public Optional<Product> getBy(String productName) {
+        CatalogFetchEvent event = begin(productName, false);
+        if (event == null) return delegate.getBy(productName);
+
+        if (catalog != null) {
+            try {
+                return traced(event, productName, timeout).join();
+            } catch (CompletionException e) {
+                return Optional.empty();
+            }
+        }
+
+        try {
+            Optional<Product> result = delegate.getBy(productName);
+            commit(event, result, null);
+            return result;
+        } catch (RuntimeException e) {
+            commit(event, null, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Optional<Product>> getByAsync(String productName) {
+        CatalogFetchEvent event = begin(productName, true);
+        if (event == null) return delegate.getByAsync(productName);
+        if (catalog != null) return traced(event, productName, timeout).exceptionally(e -> Optional.empty());
+
+        try {
+            return delegate.getByAsync(productName).whenComplete((result, e) -> commit(event, result, e));
+        } catch (RuntimeException e) {
+            commit(event, null, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Traces the fetch when the delegate is a CatalogClient; otherwise it goes
+     * through getByAsync, which cannot tell a failed lookup from not found.
+     */
+    @Override
+    public CompletableFuture<Optional<Product>> fetch(String productName, Duration timeout) {
+        Objects.requireNonNull(timeout, "Timeout is invalid.");
+        if (catalog == null) {
+            return getByAsync(productName).orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS).handle((result, e) -> {
+                if (e != null) throw ProductUnavailableException.of(productName, e);
+                return result;
+            });
+        }
+
+        CatalogFetchEvent event = begin(productName, true);
+        if (event == null) return catalog.fetch(productName, timeout);
+
+        return traced(event, productName, timeout);
+    }
+
+    private CompletableFuture<Optional<Product>> traced(CatalogFetchEvent event, String productName, Duration timeout) {
+        try {
+            return catalog.fetch(productName, timeout).whenComplete((result, e) -> commit(event, result, e));
+        } catch (RuntimeException e) {
+            commit(event, null, e);
+            return CompletableFuture.failedFuture(ProductUnavailableException.of(productName, e));
+        }
+    }
+
+    private static CatalogFetchEvent begin(String productName, boolean asynchronous) {
+        CatalogFetchEvent event = new CatalogFetchEvent();
+        if (!event.isEnabled() || !Tracing.CATALOG.sample()) return null;
+
+        event.productName = productName;
+        event.asynchronous = asynchronous;
+        event.sampledOneIn = Tracing.CATALOG.oneIn();
+        event.begin();
+        return event;
+    }
+
+    private static void commit(CatalogFetchEvent event, Optional<Product> result, Throwable failure) {
+        event.end();
+        if (!event.shouldCommit()) return;
+
+        event.outcome = failure != null ? "error" : result.isPresent() ? "found" : "notFound";
+        event.commit();
+    }
+}
@@ -0,0 +1,164 @@
+package com.changent.tax;
+
+import com.changent.entities.TaxCalculator;
+import com.changent.entities.TaxRounding;
+import com.changent.valueobjects.Money;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Tax rates by region and product category, compiled from a rules file.
+ * <p>
+ * Each line of the file is a rule, blank lines and lines starting with # aside:
+ * <pre>
+ * rounding,PER_LINE                  how tax is rounded, PER_INVOICE if omitted
+ * rate,US-CA,food,0.0725             the rate of a category in a region
+ * rate,US-CA,*,0.0825                the rate of every other category in the region
+ * rate,*,food,0                      the rate of a category in every other region
+ * rate,*,*,0.125                     the rate of everything else, 0 if omitted
+ * category,food,Corn Flakes          puts the product with the title in the category
+ * </pre>
+ * Compiling resolves every region and category pair to its most specific rule,
+ * in that order of precedence, into one flat array of rates. Looking a rate up
+ * is then a title to category map lookup and an array read.
+ */
+public final class TaxTable {
+    public static final String ANY = "*";
+
+    private static final int ANY_ID = 0;
+
+    private TaxTable(Map<String, Integer> regionIds, Map<String, Integer> categoryIdsByTitle, int categoryCount, long[] rates, TaxRounding rounding) {
+        this.regionIds = regionIds;
+        this.categoryIdsByTitle = categoryIdsByTitle;
+        this.categoryCount = categoryCount;
+        this.rates = rates;
+        this.rounding = rounding;
+    }
+
+    private final Map<String, Integer> regionIds;
+    private final Map<String, Integer> categoryIdsByTitle;
+    private final int categoryCount;
+    // The rate of region r and category c, in millionths, is at r * categoryCount + c.
+    private final long[] rates;
+    private final TaxRounding rounding;
+
+    public static TaxTable load(Path rulesFile) throws IOException {
+        Objects.requireNonNull(rulesFile, "Rules file is invalid.");
+
+        return compile(Files.readAllLines(rulesFile, StandardCharsets.UTF_8));
+    }
+
+    public static TaxTable compile(List<String> rules) {
+        Objects.requireNonNull(rules, "Rules are invalid.");
+
+        Map<String, Integer> regionIds = new HashMap<>(Map.of(ANY, ANY_ID));
+        Map<String, Integer> categoryIds = new HashMap<>(Map.of(ANY, ANY_ID));
+        Map<String, Integer> categoryIdsByTitle = new HashMap<>();
+        Map<List<Integer>, Long> ratesByRule = new HashMap<>();
+        TaxRounding rounding = TaxRounding.PER_INVOICE;
+
+        for (int lineNumber = 1; lineNumber <= rules.size(); lineNumber++) {
+            String rule = rules.get(lineNumber - 1).strip();
+            if (rule.isEmpty() || rule.startsWith("#")) continue;
+
+            String[] fields = rule.split(",", 4);
+            try {
+                switch (fields[0].strip()) {
+                    case "rounding" -> {
+                        checkFieldCount(fields, 2);
+                        rounding = TaxRounding.valueOf(fields[1].strip());
+                    }
+                    case "rate" -> {
+                        checkFieldCount(fields, 4);
+                        int region = idOf(regionIds, fields[1].strip());
+                        int category = idOf(categoryIds, fields[2].strip());
+                        long rate = Money.millionthsOf(Double.parseDouble(fields[3].strip()));
+                        if (rate < 0) throw new IllegalArgumentException("Rate is negative.");
+
+                        ratesByRule.put(List.of(region, category), rate);
+                    }
+                    case "category" -> {
+                        if (fields.length < 3) throw new IllegalArgumentException("Expected a category and a title.");
+                        String title = rule.substring(rule.indexOf(',', rule.indexOf(',') + 1) + 1).strip();
+                        categoryIdsByTitle.put(title, idOf(categoryIds, fields[1].strip()));
+                    }
+                    default -> throw new IllegalArgumentException("Unknown rule.");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Tax rule on line " + lineNumber + " is invalid: " + e.getMessage(), e);
+            }
+        }
+
+        int regionCount = regionIds.size();
+        int categoryCount = categoryIds.size();
+        long[] rates = new long[regionCount * categoryCount];
+
+        for (int region = 0; region < regionCount; region++) {
+            for (int category = 0; category < categoryCount; category++) {
+                rates[region * categoryCount + category] = mostSpecificRate(ratesByRule, region, category);
+            }
+        }
+
+        return new TaxTable(Map.copyOf(regionIds), Map.copyOf(categoryIdsByTitle), categoryCount, rates, rounding);
+    }
+
+    /**
+     * The calculator for carts in the region. Regions without rules of their own get the rules for *.
+     */
+    public TaxCalculator forRegion(String region) {
+        Objects.requireNonNull(region, "Region is invalid.");
+
+        return new RegionalTax(regionIds.getOrDefault(region, ANY_ID) * categoryCount);
+    }
+
+    public long rateInMillionths(String region, String title) {
+        return forRegion(region).rateInMillionths(title);
+    }
+
+    public TaxRounding rounding() {
+        return rounding;
+    }
+
+    private static long mostSpecificRate(Map<List<Integer>, Long> ratesByRule, int region, int category) {
+        Long rate = ratesByRule.get(List.of(region, category));
+        if (rate == null) rate = ratesByRule.get(List.of(region, ANY_ID));
+        if (rate == null) rate = ratesByRule.get(List.of(ANY_ID, category));
+        if (rate == null) rate = ratesByRule.get(List.of(ANY_ID, ANY_ID));
+
+        return rate == null ? 0 : rate;
+    }
+
+    private static int idOf(Map<String, Integer> ids, String name) {
+        if (name.isEmpty()) throw new IllegalArgumentException("Name is empty.");
+
+        return ids.computeIfAbsent(name, key -> ids.size());
+    }
+
+    private static void checkFieldCount(String[] fields, int expected) {
+        if (fields.length != expected) throw new IllegalArgumentException("Expected " + expected + " fields.");
+    }
+
+    private final class RegionalTax implements TaxCalculator {
+        RegionalTax(int firstRate) {
+            this.firstRate = firstRate;
+        }
+
+        private final int firstRate;
+
+        @Override
+        public long rateInMillionths(String title) {
+            Integer category = categoryIdsByTitle.get(title);
+
+            return rates[firstRate + (category == null ? ANY_ID : category)];
+        }
+
+        @Override
+        public TaxRounding rounding() {
+            return rounding;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.changent.tracing;
+
+import jdk.jfr.*;
+
+@Name("com.changent.CartMutation")
+@Label("Cart Mutation")
+@Category({"Changent", "Cart"})
+@Description("A product's line in a cart was added to, removed from or repriced.")
+@StackTrace(false)
+public class CartMutationEvent extends Event {
+    @Label("Kind")
+    @Description("added, removed or repriced")
+    public String kind;
+
+    @Label("Product Name")
+    public String productName;
+
+    @Label("Quantity")
+    @Description("The quantity added or removed; zero for a reprice.")
+    public int quantity;
+
+    @Label("Line Quantity")
+    public int lineQuantity;
+
+    @Label("Line Price In Cents")
+    public long linePriceInCents;
+
+    @Label("Sampled One In")
+    public int sampledOneIn;
+}
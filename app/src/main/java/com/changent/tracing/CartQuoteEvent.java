@@ -0,0 +1,26 @@
+package com.changent.tracing;
+
+import jdk.jfr.*;
+
+@Name("com.changent.CartQuote")
+@Label("Cart Quote")
+@Category({"Changent", "Cart"})
+@Description("A cart's quote was priced from its lines.")
+@StackTrace(false)
+public class CartQuoteEvent extends Event {
+    @Label("Lines")
+    public int lines;
+
+    @Label("Item Count")
+    public int itemCount;
+
+    @Label("Total In Cents")
+    public long totalInCents;
+
+    @Label("Pricing Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long pricingTime;
+
+    @Label("Sampled One In")
+    public int sampledOneIn;
+}
@@ -0,0 +1,58 @@
+package com.changent.tracing;
+
+import com.changent.entities.Cart;
+import com.changent.entities.CartListener;
+import com.changent.entities.CartQuote;
+import com.changent.entities.Item;
+import com.changent.valueobjects.Money;
+
+/**
+ * Records CartMutation and CartQuote events for the carts it listens to.
+ * It holds no state, so the one INSTANCE may be added to every cart.
+ */
+public final class CartTracing implements CartListener {
+    private CartTracing() {}
+
+    public static final CartTracing INSTANCE = new CartTracing();
+
+    @Override
+    public void added(Cart cart, String productName, Item line, int quantity) {
+        mutated("added", productName, line, quantity);
+    }
+
+    @Override
+    public void removed(Cart cart, String productName, Item line, int quantity) {
+        mutated("removed", productName, line, quantity);
+    }
+
+    @Override
+    public void repriced(Cart cart, String productName, Item line, Money previousPrice) {
+        mutated("repriced", productName, line, 0);
+    }
+
+    @Override
+    public void quoted(Cart cart, CartQuote quote, long elapsedNanos) {
+        CartQuoteEvent event = new CartQuoteEvent();
+        if (!event.isEnabled() || !Tracing.CART_QUOTES.sample()) return;
+
+        event.lines = quote.lines().size();
+        event.itemCount = quote.itemCount();
+        event.totalInCents = quote.total().get().movePointRight(2).longValue();
+        event.pricingTime = elapsedNanos;
+        event.sampledOneIn = Tracing.CART_QUOTES.oneIn();
+        event.commit();
+    }
+
+    private static void mutated(String kind, String productName, Item line, int quantity) {
+        CartMutationEvent event = new CartMutationEvent();
+        if (!event.isEnabled() || !Tracing.CART_MUTATIONS.sample()) return;
+
+        event.kind = kind;
+        event.productName = productName;
+        event.quantity = quantity;
+        event.lineQuantity = line.quantity();
+        event.linePriceInCents = line.price().cents();
+        event.sampledOneIn = Tracing.CART_MUTATIONS.oneIn();
+        event.commit();
+    }
+}
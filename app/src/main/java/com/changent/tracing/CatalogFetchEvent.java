@@ -0,0 +1,23 @@
+package com.changent.tracing;
+
+import jdk.jfr.*;
+
+@Name("com.changent.CatalogFetch")
+@Label("Catalog Fetch")
+@Category({"Changent", "Catalog"})
+@Description("A product lookup, from the call until the product or its absence is known.")
+@StackTrace(false)
+public class CatalogFetchEvent extends Event {
+    @Label("Product Name")
+    public String productName;
+
+    @Label("Outcome")
+    @Description("found, notFound or error")
+    public String outcome;
+
+    @Label("Asynchronous")
+    public boolean asynchronous;
+
+    @Label("Sampled One In")
+    public int sampledOneIn;
+}
@@ -0,0 +1,19 @@
+package com.changent.tracing;
+
+import jdk.jfr.*;
+
+@Name("com.changent.ProductCreated")
+@Label("Product Created")
+@Category({"Changent", "Catalog"})
+@Description("A Product was constructed, e.g. by fromJson or a catalog lookup.")
+@StackTrace(false)
+public class ProductCreatedEvent extends Event {
+    @Label("Title")
+    public String title;
+
+    @Label("Price In Cents")
+    public long priceInCents;
+
+    @Label("Sampled One In")
+    public int sampledOneIn;
+}
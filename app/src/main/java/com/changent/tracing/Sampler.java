@@ -0,0 +1,34 @@
+package com.changent.tracing;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which of many occurrences are traced: on average one in oneIn,
+ * chosen at random so periodic work is not always or never seen.
+ * A rate of 1 traces everything and 0 nothing. The rate may be changed
+ * while tracing, e.g. to look closer at a live process.
+ */
+public final class Sampler {
+    public Sampler(int oneIn) {
+        setOneIn(oneIn);
+    }
+
+    private volatile int oneIn;
+
+    public boolean sample() {
+        int rate = oneIn;
+
+        if (rate <= 1) return rate == 1;
+        return ThreadLocalRandom.current().nextInt(rate) == 0;
+    }
+
+    public int oneIn() {
+        return oneIn;
+    }
+
+    public void setOneIn(int oneIn) {
+        if (oneIn < 0) throw new IllegalArgumentException("Sampling rate is invalid.");
+
+        this.oneIn = oneIn;
+    }
+}
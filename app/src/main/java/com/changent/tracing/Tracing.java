@@ -0,0 +1,42 @@
+package com.changent.tracing;
+
+/**
+ * The samplers for each kind of event. Their rates are read from system
+ * properties, e.g. -Dchangent.tracing.products.oneIn=1 to trace every product
+ * created, and can be changed at runtime.
+ * <p>
+ * Events are only built when a Flight Recorder recording has them enabled and
+ * the sampler picks them, so with no recording running tracing costs a check.
+ * Each event records the rate it was sampled at, to scale counts back up.
+ */
+public final class Tracing {
+    private Tracing() {}
+
+    public static final Sampler PRODUCTS = samplerFor("products", 100);
+    public static final Sampler CATALOG = samplerFor("catalog", 1);
+    public static final Sampler CART_MUTATIONS = samplerFor("cartMutations", 10);
+    public static final Sampler CART_QUOTES = samplerFor("cartQuotes", 1);
+
+    /**
+     * Records a ProductCreated event, if it is enabled and sampled.
+     */
+    public static void productCreated(String title, long priceInCents) {
+        ProductCreatedEvent event = new ProductCreatedEvent();
+        if (!event.isEnabled() || !PRODUCTS.sample()) return;
+
+        event.title = title;
+        event.priceInCents = priceInCents;
+        event.sampledOneIn = PRODUCTS.oneIn();
+        event.commit();
+    }
+
+    private static Sampler samplerFor(String name, int defaultOneIn) {
+        String property = "changent.tracing." + name + ".oneIn";
+
+        try {
+            return new Sampler(Integer.getInteger(property, defaultOneIn));
+        } catch (IllegalArgumentException e) {
+            return new Sampler(defaultOneIn);
+        }
+    }
+}
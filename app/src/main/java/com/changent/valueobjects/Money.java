@@ -0,0 +1,173 @@
+package com.changent.valueobjects;
+
+import java.math.BigDecimal;
+
+/**
+ * An exact amount of money held as a whole number of cents.
+ * Arithmetic is plain long arithmetic that fails on overflow rather than
+ * losing precision. The static methods work on raw cents so hot paths,
+ * such as summing a cart, need not allocate a Money per step.
+ * Convert to a USDollar at the API boundary.
+ */
+public final class Money implements Comparable<Money> {
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    public static final Money ZERO = new Money(0);
+
+    // Rates are applied as a whole number of millionths, e.g. 12.5% is 125_000.
+    private static final long MILLIONTHS = 1_000_000;
+
+    private final long cents;
+
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    /**
+     * Converts a decimal amount, such as 8.43, to Money.
+     * Amounts with more than two decimals are rejected rather than rounded.
+     */
+    public static Money of(double amount) {
+        if (!Double.isFinite(amount)) throw new IllegalArgumentException("Amount is invalid.");
+
+        return of(BigDecimal.valueOf(amount));
+    }
+
+    public static Money of(String amount) {
+        if( amount == null ) {
+            throw new IllegalArgumentException("Amount cannot be null.");
+        }
+
+        return of(new BigDecimal(amount));
+    }
+
+    private static Money of(BigDecimal amount) {
+        try {
+            return ofCents(amount.movePointRight(2).longValueExact());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(
+                    "Number of decimals is " + amount.stripTrailingZeros().scale() + ". Money can only have two."
+            );
+        }
+    }
+
+    public long cents() {
+        return cents;
+    }
+
+    public double doubleValue() {
+        return cents / 100.0;
+    }
+
+    public boolean isNegative() {
+        return cents < 0;
+    }
+
+    public Money plus(Money other) {
+        return ofCents(add(cents, other.cents));
+    }
+
+    public Money minus(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    public Money times(int quantity) {
+        return ofCents(multiply(cents, quantity));
+    }
+
+    public Money multiplyUsingBankersRoundingBy(double factor) {
+        return ofCents(multiplyUsingBankersRounding(cents, millionthsOf(factor)));
+    }
+
+    public USDollar toUSDollar() {
+        return new USDollar(BigDecimal.valueOf(cents, 2));
+    }
+
+    public static long add(long cents, long otherCents) {
+        return Math.addExact(cents, otherCents);
+    }
+
+    public static long multiply(long cents, int quantity) {
+        return Math.multiplyExact(cents, (long) quantity);
+    }
+
+    /**
+     * Multiplies cents by a factor given in millionths and rounds the
+     * result to whole cents, half to even.
+     */
+    public static long multiplyUsingBankersRounding(long cents, long factorInMillionths) {
+        return roundUsingBankersRounding(multiplyRoundingDown(cents, factorInMillionths), remainderOfMultiply(cents, factorInMillionths));
+    }
+
+    /**
+     * Multiplies cents by a factor given in millionths, rounding down to whole cents.
+     * The product is never formed, so this only overflows if the result does.
+     */
+    public static long multiplyRoundingDown(long cents, long factorInMillionths) {
+        return Math.addExact(
+                Math.multiplyExact(cents / MILLIONTHS, factorInMillionths),
+                Math.floorDiv((cents % MILLIONTHS) * factorInMillionths, MILLIONTHS)
+        );
+    }
+
+    /**
+     * What multiplyRoundingDown drops, in millionths of a cent: from zero up to, not including, a million.
+     */
+    public static long remainderOfMultiply(long cents, long factorInMillionths) {
+        return Math.floorMod((cents % MILLIONTHS) * factorInMillionths, MILLIONTHS);
+    }
+
+    /**
+     * Rounds whole cents plus millionths of a cent, e.g. the sums of several
+     * multiplyRoundingDown and remainderOfMultiply results, to whole cents, half to even.
+     */
+    public static long roundUsingBankersRounding(long wholeCents, long millionthsOfACent) {
+        long quotient = Math.addExact(wholeCents, Math.floorDiv(millionthsOfACent, MILLIONTHS));
+        long twiceRemainder = 2 * Math.floorMod(millionthsOfACent, MILLIONTHS);
+
+        if (twiceRemainder > MILLIONTHS || (twiceRemainder == MILLIONTHS && (quotient & 1) != 0)) {
+            quotient++;
+        }
+
+        return quotient;
+    }
+
+    /**
+     * Converts a factor such as 0.125 to millionths, the form taken by
+     * multiplyUsingBankersRounding. Factors finer than a millionth are rejected.
+     */
+    public static long millionthsOf(double factor) {
+        if (!Double.isFinite(factor)) throw new IllegalArgumentException("Factor is invalid.");
+
+        try {
+            return BigDecimal.valueOf(factor).movePointRight(6).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Factor is invalid.");
+        }
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Money money = (Money) o;
+        return cents == money.cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    @Override
+    public String toString() {
+        return BigDecimal.valueOf(cents, 2).toPlainString();
+    }
+}
@@ -4,8 +4,6 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.Objects;
 
-// TODO(wltiii): USDollar should have a method to add two USDollars. I see this as static
-// method that returns a new USDollar
 // TODO(wltiii): USDollar, in the real world, should extend/implement a Currency class. This
 // then may need to know things like symbols. This could get quite interesting in itself, for
 // you would want to know the type of currency by locale (most likely) and have some sort of
@@ -0,0 +1,185 @@
+package com.changent.entities;
+
+import com.changent.services.MappedCatalogBuilder;
+import com.changent.services.MappedCatalogProductService;
+import com.changent.services.ProductServiceMockImpl;
+import com.changent.valueobjects.Money;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CartBinaryCodecTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final String[] GIVEN_LINES = {
+            "{\"title\": \"Corn Flakes\",\"price\": 2.52, \"quantity\": 2}",
+            "{\"title\": \"Weetabix\",\"price\": 9.98, \"quantity\": 1}",
+            "{\"title\": \"Café Crème\",\"price\": 0.05, \"quantity\": 300}",
+            "{\"title\": \"Bulk Oats\",\"price\": 123456.78, \"quantity\": 2000000000}"
+    };
+
+    private static final Map<String, Product> GIVEN_CATALOG = Map.of(
+            "cheerios", new Product("Cheerios", 8.43),
+            "cornflakes", new Product("Corn Flakes", 2.52),
+            "frosties", new Product("Frosties", 4.99),
+            "shreddies", new Product("Shreddies", 4.68),
+            "weetabix", new Product("Weetabix", 9.98)
+    );
+
+    private static Cart cartOf(String... jsonLines) {
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        for (String json : jsonLines) cart.restore(Item.fromJson(json).title(), Item.fromJson(json));
+        return cart;
+    }
+
+    private static Map<String, String> jsonLinesOf(Cart cart) {
+        Map<String, String> lines = new TreeMap<>();
+        cart.forEachItem((name, item) -> {
+            try {
+                lines.put(name, item.toJson());
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+        return lines;
+    }
+
+    private static ByteBuffer encode(Cart cart, ProductDictionary dictionary) {
+        ByteBuffer buffer = ByteBuffer.allocate(CartBinaryCodec.encodedSize(cart, dictionary));
+        CartBinaryCodec.encode(cart, buffer, dictionary);
+        assertFalse(buffer.hasRemaining());
+        return buffer.flip();
+    }
+
+    private MappedCatalogProductService catalog() throws IOException {
+        Path catalogFile = tempDir.resolve("catalog.bin");
+        MappedCatalogBuilder.write(GIVEN_CATALOG, catalogFile);
+        return MappedCatalogProductService.open(catalogFile);
+    }
+
+    @Test
+    @DisplayName("round trips items as Item.fromJson and toJson see them")
+    void roundTrip() {
+        Cart cart = cartOf(GIVEN_LINES);
+
+        Cart result = CartBinaryCodec.decode(encode(cart, null), new ProductServiceMockImpl());
+
+        assertEquals(jsonLinesOf(cart), jsonLinesOf(result));
+        assertEquals(cart.getTotalProductCount(), result.getTotalProductCount());
+        assertEquals(cart.getSubtotal(), result.getSubtotal());
+    }
+
+    @Test
+    @DisplayName("round trips an empty cart")
+    void roundTripEmptyCart() {
+        Cart result = CartBinaryCodec.decode(encode(cartOf(), null), new ProductServiceMockImpl());
+
+        assertEquals(0, result.getTotalProductCount());
+    }
+
+    @Test
+    @DisplayName("refers to catalog products by id")
+    void roundTripWithDictionary() throws IOException {
+        MappedCatalogProductService catalog = catalog();
+        Cart cart = new Cart(catalog);
+        cart.addProduct("cornflakes", 2);
+        cart.addProduct("weetabix", 1);
+        cart.addProduct("frosties", 12);
+        cart.restore("house-brand", new Item(new Product("House Brand", Money.of(1.99)), 3));
+
+        ByteBuffer encoded = encode(cart, catalog);
+        Cart result = CartBinaryCodec.decode(encoded, catalog, catalog);
+
+        assertEquals(jsonLinesOf(cart), jsonLinesOf(result));
+        assertEquals(12, result.getCountForProduct("frosties"));
+        assertEquals(3, result.getCountForProduct("house-brand"));
+    }
+
+    @Test
+    @DisplayName("is several times smaller than the JSON document")
+    void smallerThanJson() throws IOException {
+        MappedCatalogProductService catalog = catalog();
+        Cart cart = new Cart(catalog);
+        for (String name : GIVEN_CATALOG.keySet()) cart.addProduct(name, 2);
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        cart.writeTo(json);
+
+        assertTrue(CartBinaryCodec.encodedSize(cart) * 3 < json.size());
+        assertTrue(CartBinaryCodec.encodedSize(cart, catalog) * 5 < json.size());
+    }
+
+    @Test
+    @DisplayName("decoding fails without the dictionary the cart was encoded with")
+    void decodeFailsWithoutDictionary() throws IOException {
+        MappedCatalogProductService catalog = catalog();
+        Cart cart = new Cart(catalog);
+        cart.addProduct("cornflakes", 2);
+        ByteBuffer encoded = encode(cart, catalog);
+
+        Path otherFile = tempDir.resolve("other.bin");
+        MappedCatalogBuilder.write(Map.of("cornflakes", new Product("Corn Flakes", 2.52)), otherFile);
+        MappedCatalogProductService other = MappedCatalogProductService.open(otherFile);
+
+        assertThrows(IllegalArgumentException.class, () -> CartBinaryCodec.decode(encoded.duplicate(), catalog));
+        assertThrows(IllegalArgumentException.class, () -> CartBinaryCodec.decode(encoded.duplicate(), catalog, other));
+    }
+
+    @Test
+    @DisplayName("decoding fails on an unknown version")
+    void decodeFailsOnUnknownVersion() {
+        ByteBuffer encoded = ByteBuffer.wrap(new byte[]{42, 0, 0});
+
+        assertThrows(IllegalArgumentException.class, () -> CartBinaryCodec.decode(encoded, new ProductServiceMockImpl()));
+    }
+
+    @Test
+    @DisplayName("decodes into a cart made with the TaxCalculator it had")
+    void decodeIntoKeepsTaxCalculator() {
+        TaxCalculator taxFree = TaxCalculator.flat(0);
+        Cart cart = new Cart(new ProductServiceMockImpl(), taxFree);
+        cart.addProduct("cheerios", 2);
+
+        Cart result = new Cart(new ProductServiceMockImpl(), taxFree);
+        CartBinaryCodec.decodeInto(encode(cart, null), result, null);
+
+        assertEquals(2, result.getCountForProduct("cheerios"));
+        assertEquals(cart.getTotalPayable(), result.getTotalPayable());
+        assertEquals(cart.getSubtotal(), result.getTotalPayable());
+    }
+
+    @Test
+    @DisplayName("decoding fails on a string running past the end")
+    void decodeFailsOnTruncatedString() {
+        ByteBuffer encoded = encode(cartOf(GIVEN_LINES[0]), null);
+        ByteBuffer truncated = ByteBuffer.wrap(encoded.array(), 0, encoded.limit() - 6).slice();
+
+        assertThrows(IllegalArgumentException.class, () -> CartBinaryCodec.decode(truncated, new ProductServiceMockImpl()));
+    }
+
+    @Test
+    @DisplayName("varints round trip at their boundaries")
+    void varints() {
+        long[] givenValues = {0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE, Long.MAX_VALUE};
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+
+        for (long value : givenValues) CartBinaryCodec.putVarint(buffer, value);
+        buffer.flip();
+
+        for (long value : givenValues) assertEquals(value, CartBinaryCodec.getVarint(buffer));
+        assertFalse(buffer.hasRemaining());
+        assertEquals(1, CartBinaryCodec.varintSize(127));
+        assertEquals(2, CartBinaryCodec.varintSize(128));
+    }
+}
@@ -1,8 +1,28 @@
 package com.changent.entities;
 
+import com.changent.services.CountingProductService;
+import com.changent.services.ProductService;
 import com.changent.services.ProductServiceMockImpl;
+import com.changent.valueobjects.Money;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import javax.json.JsonException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -234,6 +254,32 @@ class CartTest {
 
     }
 
+    @Test
+    @DisplayName("totals follow additions and removals.")
+    void totalsFollowMutations() {
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        cart.addProduct("cornflakes", 3);
+        cart.addProduct("weetabix", 2);
+        cart.removeProduct("cornflakes", 1);
+        cart.removeProduct("weetabix", 5);
+        cart.addProduct("frosties", 1);
+
+        assertEquals(3, cart.getTotalProductCount());
+        assertEquals(10.03, cart.getSubtotal().get().doubleValue());
+        assertEquals(1.25, cart.getTaxPayable().get().doubleValue());
+        assertEquals(11.28, cart.getTotalPayable().get().doubleValue());
+    }
+
+    @Test
+    @DisplayName("an empty cart has zero totals.")
+    void emptyCartTotals() {
+        Cart cart = new Cart(new ProductServiceMockImpl());
+
+        assertEquals(0, cart.getTotalProductCount());
+        assertEquals(0.0, cart.getSubtotal().get().doubleValue());
+        assertEquals(0.0, cart.getTotalPayable().get().doubleValue());
+    }
+
     @Test
     void confirmationTest() {
         Cart cart = new Cart(new ProductServiceMockImpl());
@@ -257,4 +303,373 @@ class CartTest {
 //  Total = 16.90
         assertEquals(16.90, cart.getTotalPayable().get().doubleValue());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("adds several products in one call.")
+    void addProducts() {
+        Map<String, Integer> givenProducts = new LinkedHashMap<>();
+        givenProducts.put("cornflakes", 2);
+        givenProducts.put("weetabix", 1);
+        givenProducts.put("invalid-product-title", 4);
+        givenProducts.put("frosties", 0);
+
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        cart.addProducts(givenProducts);
+
+        assertEquals(2, cart.getCountForProduct("cornflakes"));
+        assertEquals(1, cart.getCountForProduct("weetabix"));
+        assertEquals(0, cart.getCountForProduct("frosties"));
+        assertEquals(3, cart.getTotalProductCount());
+        assertEquals(15.02, cart.getSubtotal().get().doubleValue());
+    }
+
+    @Test
+    @DisplayName("adding several products fails before any lookup when a quantity is negative.")
+    void addProductsFailsOnNegativeQuantity() {
+        CountingProductService service = new CountingProductService(new ProductServiceMockImpl());
+        Map<String, Integer> givenProducts = new LinkedHashMap<>();
+        givenProducts.put("cornflakes", 2);
+        givenProducts.put("weetabix", -1);
+
+        Cart cart = new Cart(service);
+
+        assertThrows(IllegalArgumentException.class, () -> cart.addProducts(givenProducts));
+        assertEquals(0, service.calls());
+        assertEquals(0, cart.getTotalProductCount());
+    }
+
+    @Test
+    @DisplayName("looks up several products concurrently.")
+    @Timeout(10)
+    void addProductsLooksUpConcurrently() {
+        Map<String, Integer> givenProducts = Map.of("cornflakes", 1, "weetabix", 1, "frosties", 1);
+        CountDownLatch allLookupsStarted = new CountDownLatch(givenProducts.size());
+        ProductService mock = new ProductServiceMockImpl();
+
+        // each lookup waits until every lookup has started, so serial lookups never finish
+        Cart cart = new Cart(title -> {
+            allLookupsStarted.countDown();
+            try {
+                allLookupsStarted.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return mock.getBy(title);
+        });
+        cart.addProducts(givenProducts);
+
+        assertEquals(3, cart.getTotalProductCount());
+    }
+
+    @Test
+    @DisplayName("writes the whole cart as one JSON document.")
+    void writeTo() {
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        cart.addProduct("cornflakes", 2);
+        cart.addProduct("weetabix", 1);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cart.writeTo(out);
+        String json = out.toString(StandardCharsets.UTF_8);
+
+        assertTrue(json.contains("{\"product\":\"cornflakes\",\"title\":\"Corn Flakes\",\"price\":2.52,\"quantity\":2}"));
+        assertTrue(json.contains("{\"product\":\"weetabix\",\"title\":\"Weetabix\",\"price\":9.98,\"quantity\":1}"));
+        assertTrue(json.endsWith("\"totalProductCount\":3,\"subtotal\":15.02,\"tax\":1.88,\"total\":16.90}"));
+    }
+
+    @Test
+    @DisplayName("reads back a written cart without looking its products up.")
+    void readFrom() {
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        cart.addProduct("cornflakes", 2);
+        cart.addProduct("weetabix", 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cart.writeTo(out);
+
+        CountingProductService service = new CountingProductService(new ProductServiceMockImpl());
+        Cart result = Cart.readFrom(new ByteArrayInputStream(out.toByteArray()), service);
+
+        assertEquals(0, service.calls());
+        assertEquals(2, result.getCountForProduct("cornflakes"));
+        assertEquals(1, result.getCountForProduct("weetabix"));
+        assertEquals(cart.getSubtotal(), result.getSubtotal());
+        assertEquals(cart.getTotalPayable(), result.getTotalPayable());
+    }
+
+    @Test
+    @DisplayName("round trips a cart with tens of thousands of lines.")
+    void writeToAndReadFromLargeCart() {
+        final int givenLines = 20_000;
+        Cart cart = new Cart(title -> Optional.of(new Product("Product " + title, Money.ofCents(title.length() * 101L))));
+        for (int i = 0; i < givenLines; i++) {
+            cart.addProduct("sku-" + i, 1 + i % 5);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cart.writeTo(out);
+        Cart result = Cart.readFrom(new ByteArrayInputStream(out.toByteArray()), new ProductServiceMockImpl());
+
+        assertEquals(cart.getTotalProductCount(), result.getTotalProductCount());
+        assertEquals(cart.getSubtotal(), result.getSubtotal());
+        assertEquals(3, result.getCountForProduct("sku-12347"));
+    }
+
+    @Test
+    @DisplayName("reading a cart fails on a document that is not a cart.")
+    void readFromFailsOnInvalidDocument() {
+        ProductService service = new ProductServiceMockImpl();
+
+        assertThrows(JsonException.class,
+                () -> Cart.readFrom(new ByteArrayInputStream("[]".getBytes(StandardCharsets.UTF_8)), service));
+        assertThrows(JsonException.class,
+                () -> Cart.readFrom(new ByteArrayInputStream("{\"items\":[{\"title\":\"Cheerios\"}]}".getBytes(StandardCharsets.UTF_8)), service));
+    }
+
+    @Test
+    @DisplayName("no quantity change is lost when threads share a cart.")
+    @Timeout(30)
+    void concurrentMutationsAreNotLost() throws Exception {
+        final int givenThreads = 8;
+        final int givenIterations = 10_000;
+        final List<String> givenProducts = List.of("cheerios", "cornflakes", "frosties", "shreddies", "weetabix");
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        CyclicBarrier start = new CyclicBarrier(givenThreads);
+
+        ExecutorService executor = Executors.newFixedThreadPool(givenThreads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < givenThreads; t++) {
+                final int thread = t;
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < givenIterations; i++) {
+                        // every thread adds 2 and removes 1 of the shared product, plus one of its own
+                        cart.addProduct("cornflakes", 2);
+                        cart.removeProduct("cornflakes", 1);
+                        cart.addProduct(givenProducts.get(thread % givenProducts.size()), 1);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) worker.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int expectedCornflakes = givenThreads * givenIterations;
+        for (int t = 0; t < givenThreads; t++) {
+            if (givenProducts.get(t % givenProducts.size()).equals("cornflakes")) expectedCornflakes += givenIterations;
+        }
+
+        assertEquals(expectedCornflakes, cart.getCountForProduct("cornflakes"));
+        assertEquals(2 * givenThreads * givenIterations, cart.getTotalProductCount());
+
+        long expectedSubtotal = 0;
+        for (String product : givenProducts) {
+            expectedSubtotal += cart.getCountForProduct(product)
+                    * new ProductServiceMockImpl().getBy(product).get().price().cents();
+        }
+        assertEquals(expectedSubtotal, cart.getSubtotal().get().movePointRight(2).longValueExact());
+    }
+
+    @Test
+    @DisplayName("listeners see each change, with what was actually removed.")
+    void listenersSeeChanges() {
+        List<String> changes = new ArrayList<>();
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        cart.addListener(new CartListener() {
+            @Override
+            public void added(Cart cart, String productName, Item line, int quantity) {
+                changes.add("added " + quantity + " " + productName + " to " + line.quantity());
+            }
+
+            @Override
+            public void removed(Cart cart, String productName, Item line, int quantity) {
+                changes.add("removed " + quantity + " " + productName + " to " + line.quantity());
+            }
+        });
+
+        cart.addProduct("cheerios", 2);
+        cart.addProduct("cheerios", 0);
+        cart.addProduct("unknown", 1);
+        cart.removeProduct("cheerios", 5);
+        cart.removeProduct("cheerios", 1);
+
+        assertEquals(List.of("added 2 cheerios to 2", "removed 2 cheerios to 0"), changes);
+    }
+
+    @Test
+    @DisplayName("a change a listener rejects is not made.")
+    void listenerRejectsChange() {
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        cart.addProduct("cheerios", 1);
+        cart.addListener(new CartListener() {
+            @Override
+            public void added(Cart cart, String productName, Item line, int quantity) {
+                throw new IllegalStateException("rejected");
+            }
+
+            @Override
+            public void removed(Cart cart, String productName, Item line, int quantity) {
+            }
+        });
+
+        assertThrows(IllegalStateException.class, () -> cart.addProduct("cheerios", 2));
+        assertEquals(1, cart.getCountForProduct("cheerios"));
+        assertEquals(1, cart.getTotalProductCount());
+    }
+
+    @Test
+    @DisplayName("repricing moves every line of the title and adjusts the totals.")
+    void reprice() {
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        cart.addProduct("cheerios", 2);
+        cart.restore("cheerios-multipack", new Item(new Product("Cheerios", 8.43), 3));
+        cart.addProduct("weetabix", 1);
+
+        int result = cart.reprice(new Product("Cheerios", Money.of(8.00)));
+
+        assertEquals(2, result);
+        assertEquals(0, cart.reprice(new Product("Cheerios", Money.of(8.00))));
+        assertEquals(6, cart.getTotalProductCount());
+        assertEquals(Money.ofCents(5 * 800 + 998).toUSDollar(), cart.getSubtotal());
+    }
+
+    @Test
+    @DisplayName("a quote prices the cart's lines and agrees with the totals.")
+    void quote() {
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        cart.addProduct("weetabix", 1);
+        cart.addProduct("cheerios", 2);
+
+        CartQuote result = cart.quote();
+
+        assertEquals(List.of(
+                new CartQuote.Line("cheerios", "Cheerios", Money.of(8.43), 2, Money.of(16.86)),
+                new CartQuote.Line("weetabix", "Weetabix", Money.of(9.98), 1, Money.of(9.98))
+        ), result.lines());
+        assertEquals(3, result.itemCount());
+        assertEquals(cart.getSubtotal(), result.subtotal());
+        assertEquals(cart.getTaxPayable(), result.tax());
+        assertEquals(cart.getTotalPayable(), result.total());
+        assertEquals(cart.version(), result.version());
+    }
+
+    @Test
+    @DisplayName("a quote is reused until the cart changes.")
+    void quoteIsCached() {
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        cart.addProduct("cheerios", 1);
+        CartQuote first = cart.quote();
+
+        assertSame(first, cart.quote());
+
+        cart.addProduct("cheerios", 1);
+        CartQuote second = cart.quote();
+
+        assertNotSame(first, second);
+        assertTrue(second.version() > first.version());
+        assertEquals(2, second.itemCount());
+        assertEquals(1, first.itemCount());
+        assertThrows(UnsupportedOperationException.class, () -> second.lines().clear());
+    }
+
+    @Test
+    @DisplayName("removing a product the cart does not have keeps its quote.")
+    void removingAbsentProductKeepsQuote() {
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        cart.addProduct("cheerios", 1);
+        CartQuote quote = cart.quote();
+
+        cart.removeProduct("weetabix", 1);
+
+        assertSame(quote, cart.quote());
+    }
+
+    @Test
+    @DisplayName("an empty cart quotes zero.")
+    void emptyQuote() {
+        CartQuote result = new Cart(new ProductServiceMockImpl()).quote();
+
+        assertTrue(result.lines().isEmpty());
+        assertEquals(Money.ZERO.toUSDollar(), result.total());
+    }
+
+    @Test
+    @DisplayName("tax follows the lines as they change, at each line's rate.")
+    void taxFollowsMutations() {
+        TaxCalculator givenCalculator = new TaxCalculator() {
+            @Override
+            public long rateInMillionths(String title) {
+                return title.equals("Cheerios") ? 0 : 200_000;
+            }
+
+            @Override
+            public TaxRounding rounding() {
+                return TaxRounding.PER_LINE;
+            }
+        };
+        Cart cart = new Cart(new ProductServiceMockImpl(), givenCalculator);
+
+        cart.addProduct("cheerios", 3);
+        cart.addProduct("frosties", 1);
+        cart.removeProduct("frosties", 1);
+        cart.addProduct("weetabix", 2);
+        cart.reprice(new Product("Weetabix", Money.of(10.00)));
+
+        assertEquals(Money.of(4.00).toUSDollar(), cart.getTaxPayable());
+        assertEquals(cart.getTaxPayable(), cart.quote().tax());
+    }
+
+    @Test
+    @DisplayName("a discount is taken off the subtotal and lowers the tax.")
+    void applyDiscount() {
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        cart.addProduct("cheerios", 2);
+
+        cart.applyDiscount(new Discount("cheerios-2-for-1", "Cheerios", Money.of(8.43)));
+
+        assertEquals(new BigDecimal("8.43"), cart.getSubtotal().get());
+        assertEquals(new BigDecimal("1.05"), cart.getTaxPayable().get());
+        assertEquals(new BigDecimal("9.48"), cart.getTotalPayable().get());
+        assertEquals(new BigDecimal("8.43"), cart.getDiscount().get());
+
+        CartQuote result = cart.quote();
+        assertEquals(cart.discounts(), result.discounts());
+        assertEquals(cart.getSubtotal(), result.subtotal());
+        assertEquals(cart.getTaxPayable(), result.tax());
+        assertEquals(cart.getTotalPayable(), result.total());
+    }
+
+    @Test
+    @DisplayName("a promotion's discount replaces its last, and a zero discount removes it.")
+    void applyDiscountReplaces() {
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        cart.addProduct("cheerios", 2);
+        cart.applyDiscount(new Discount("cheerios-2-for-1", "Cheerios", Money.of(8.43)));
+        long version = cart.version();
+
+        cart.applyDiscount(new Discount("cheerios-2-for-1", "Cheerios", Money.of(8.43)));
+        assertEquals(version, cart.version());
+
+        cart.applyDiscount(new Discount("cheerios-2-for-1", "Cheerios", Money.of(1.00)));
+        assertEquals(new BigDecimal("15.86"), cart.getSubtotal().get());
+        assertEquals(1, cart.discounts().size());
+
+        cart.applyDiscount(new Discount("cheerios-2-for-1", "Cheerios", Money.ZERO));
+        assertEquals(new BigDecimal("16.86"), cart.getSubtotal().get());
+        assertEquals(cart.quote().tax(), cart.getTaxPayable());
+        assertTrue(cart.discounts().isEmpty());
+        assertTrue(cart.version() > version);
+    }
+
+    @Test
+    void discountFailsWhenNegative() {
+        assertThrows(IllegalArgumentException.class, () -> new Discount("id", "Cheerios", Money.of(-1.00)));
+    }
+
+    @Test
+    void constructionFailsWhenNullTaxCalculator() {
+        assertThrows(NullPointerException.class, () -> new Cart(new ProductServiceMockImpl(), null));
+    }
+}
@@ -1,9 +1,21 @@
 package com.changent.entities;
 
+import com.changent.valueobjects.Money;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -30,6 +42,15 @@ class ItemTest {
         assertEquals(givenQuantity, item.quantity());
     }
 
+    @Test
+    @DisplayName("line price is the unit price times the quantity")
+    void linePrice() {
+        Item item = new Item(new Product("Cheerios", 4.49), 3);
+
+        assertEquals(Money.ofCents(449), item.price());
+        assertEquals(Money.ofCents(1347), item.linePrice());
+    }
+
     @Test
     @DisplayName("constructs when quantity is zero")
     void constructWhenQuantityIsZero() {
@@ -322,6 +343,73 @@ class ItemTest {
         assertEquals(result.quantity(), 3);
     }
 
+    @Test
+    void fromJsonBytes() {
+        byte[] json = "{\"quantity\": 3, \"title\": \"Cheerios\",\"price\": 8.43}".getBytes(StandardCharsets.UTF_8);
+        final Item expected = new Item(new Product("Cheerios", 8.43), 3);
+
+        assertEquals(expected, Item.fromJson(json));
+        assertEquals(expected, Item.fromJson(new ByteArrayInputStream(json)));
+        assertEquals(expected, Item.fromJson(ByteBuffer.wrap(json)));
+    }
+
+    @Test
+    void fromJsonFailsWithoutQuantity() {
+        assertThrows(JsonException.class, () -> Item.fromJson("{\"title\": \"Cheerios\",\"price\": 8.43}"));
+        assertThrows(JsonException.class, () -> Item.fromJson("{\"title\": \"Cheerios\",\"price\": 8.43, \"quantity\": 1.5}"));
+    }
+
+    @Test
+    @DisplayName("writes the same bytes as the javax.json writer")
+    void toJsonMatchesJsonWriter() throws IOException {
+        String[] givenTitles = {"Cheerios", "Corn \"Flakes\"", "back\\slash/", "tab\tnew\nline\r\b\f",
+                "\u0000\u001f\u007f", "Café Crème", "日本", "emoji \uD83E\uDD63", "lone \uD83E surrogate"};
+        Random random = new Random(42);
+
+        for (String givenTitle : givenTitles) {
+            for (int i = 0; i < 2_000; i++) {
+                long cents = i < 1_000 ? i : random.nextInt(2_000_000_000);
+                Item item = new Item(new Product(givenTitle, Money.ofCents(cents)), random.nextInt(Integer.MAX_VALUE));
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                item.writeJsonTo(out);
+
+                assertArrayEquals(jsonWriterOutput(item).getBytes(StandardCharsets.UTF_8), out.toByteArray());
+            }
+        }
+    }
+
+    private static String jsonWriterOutput(Item item) {
+        StringWriter stringWriter = new StringWriter();
+        try (JsonWriter jsonWriter = Json.createWriter(stringWriter)) {
+            jsonWriter.writeObject(Json.createObjectBuilder()
+                    .add("title", item.title())
+                    .add("price", item.unitPrice())
+                    .add("quantity", item.quantity())
+                    .build());
+        }
+        return stringWriter.toString();
+    }
+
+    @Test
+    @DisplayName("writes JSON into a ByteBuffer or OutputStream")
+    void writeJsonTo() throws IOException {
+        Item item = new Item(new Product("Café", 8.43), 3);
+        byte[] expected = item.toJson().getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        assertEquals(expected.length, item.writeJsonTo(buffer));
+        assertArrayEquals(expected, Arrays.copyOf(buffer.array(), buffer.position()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        item.writeJsonTo(out);
+        assertArrayEquals(expected, out.toByteArray());
+
+        ByteBuffer tooSmall = ByteBuffer.allocate(expected.length - 1);
+        assertThrows(BufferOverflowException.class, () -> item.writeJsonTo(tooSmall));
+        assertEquals(0, tooSmall.position());
+    }
+
     @Test
     void toJson() {
         String expectedJson = "{\"title\":\"Cheerios\",\"price\":8.43,\"quantity\":3}";
@@ -0,0 +1,40 @@
+package com.changent.entities;
+
+import com.changent.valueobjects.Money;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductRegistryTest {
+
+    @Test
+    @DisplayName("equal products share one canonical instance")
+    void canonicalizesEqualProducts() {
+        Product first = ProductRegistry.canonical(new Product("Registry Cheerios", 8.43));
+        Product second = ProductRegistry.canonical(new Product("Registry Cheerios", 8.43));
+
+        assertSame(first, second);
+        assertSame(first, ProductRegistry.productOf("Registry Cheerios", Money.ofCents(843)));
+    }
+
+    @Test
+    @DisplayName("a new price is a different canonical instance")
+    void distinguishesPrices() {
+        Product before = ProductRegistry.productOf("Registry Frosties", Money.of(4.99));
+        Product after = ProductRegistry.productOf("Registry Frosties", Money.of(5.49));
+
+        assertNotSame(before, after);
+        assertNotEquals(before, after);
+    }
+
+    @Test
+    @DisplayName("products and items read from JSON are canonical")
+    void fromJsonIsCanonical() {
+        String json = "{\"title\": \"Registry Weetabix\",\"price\": 9.98, \"quantity\": 1}";
+
+        assertSame(Product.fromJson(json), Product.fromJson(json));
+        assertSame(Product.fromJson(json), ProductRegistry.productOf("Registry Weetabix", Money.of(9.98)));
+        assertEquals(Item.fromJson(json), new Item(Product.fromJson(json), 1));
+    }
+}
@@ -1,8 +1,14 @@
 package com.changent.entities;
 
+import com.changent.valueobjects.Money;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import javax.json.JsonException;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -87,6 +93,39 @@ class ProductTest {
         assertEquals(thrown.getMessage(),"Price is invalid.");
     }
 
+    @Test
+    @DisplayName("construct fails when price has more than two decimals")
+    void constructThrowsOnFractionalCents() {
+        final String givenTitle = "aTitle";
+        final Double givenPrice = 0.125;
+
+        Exception thrown = assertThrows(
+                IllegalArgumentException.class,
+                () -> new Product(givenTitle, givenPrice),
+                "Expected constructor to throw on invalid price."
+        );
+
+        assertEquals(thrown.getMessage(),"Price is invalid.");
+    }
+
+    @Test
+    @DisplayName("constructs from Money and verifies getters")
+    void constructFromMoney() {
+        final Money givenPrice = Money.ofCents(449);
+        Product product = new Product("aTitle", givenPrice);
+
+        assertEquals(givenPrice, product.price());
+        assertEquals(4.49, product.unitPrice());
+        assertEquals(new Product("aTitle", 4.49), product);
+    }
+
+    @Test
+    @DisplayName("construct fails when Money price is negative")
+    void constructThrowsOnNegativeMoney() {
+        assertThrows(IllegalArgumentException.class, () -> new Product("aTitle", Money.ofCents(-1)));
+        assertThrows(NullPointerException.class, () -> new Product("aTitle", (Money) null));
+    }
+
     @Test
     @DisplayName("constructs from JSON")
     void constructFromJson() {
@@ -98,12 +137,57 @@ class ProductTest {
         assertEquals(result.unitPrice(), 8.43);
     }
 
-//    @Test
-//    @DisplayName("converts product to JSON") {
-//        StringWriter stringWriter = new StringWriter();
-//        JsonWriter jsonWriter = Json.createWriter(stringWriter);
-//        jsonWriter.writeObject(jsonObject);
-//        jsonWriter.close();
-//        String json = stringWriter.toString();
-//    }
+    @Test
+    @DisplayName("constructs from a JSON byte stream")
+    void constructFromJsonStream() {
+        byte[] json = "{\"title\": \"Cheerios\",\"price\": 8.43}".getBytes(StandardCharsets.UTF_8);
+
+        final Product result = Product.fromJson(new ByteArrayInputStream(json));
+
+        assertEquals(result.title(), "Cheerios");
+        assertEquals(result.unitPrice(), 8.43);
+    }
+
+    @Test
+    @DisplayName("constructs from JSON bytes and buffers")
+    void constructFromJsonBytes() {
+        byte[] json = "{\"title\": \"Cheerios\",\"price\": 8.43}".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(json.length).put(json).flip();
+
+        assertEquals(new Product("Cheerios", 8.43), Product.fromJson(json));
+        assertEquals(new Product("Cheerios", 8.43), Product.fromJson(ByteBuffer.wrap(json)));
+        assertEquals(new Product("Cheerios", 8.43), Product.fromJson(direct));
+        assertFalse(direct.hasRemaining());
+    }
+
+    @Test
+    @DisplayName("constructs from JSON with fields in any order and unknown fields")
+    void constructFromJsonIgnoresUnknownFields() {
+        String json = "{\"price\": 8.43, \"brand\": {\"name\": \"General Mills\", \"tags\": [1, {\"a\": 2}]}, " +
+                "\"sizes\": [\"small\", \"large\"], \"title\": \"Cheerios\"}";
+
+        assertEquals(new Product("Cheerios", 8.43), Product.fromJson(json));
+    }
+
+    @Test
+    @DisplayName("construct from JSON fails when a field is missing or mistyped")
+    void constructFromJsonFailsOnInvalidJson() {
+        assertThrows(JsonException.class, () -> Product.fromJson("{\"title\": \"Cheerios\"}"));
+        assertThrows(JsonException.class, () -> Product.fromJson("{\"title\": \"Cheerios\", \"price\": \"8.43\"}"));
+        assertThrows(JsonException.class, () -> Product.fromJson("[]"));
+        assertThrows(IllegalArgumentException.class, () -> Product.fromJson("{\"title\": \"Cheerios\", \"price\": -1}"));
+    }
+
+    @Test
+    @DisplayName("converts product to JSON")
+    void toJson() {
+        final Product givenProduct = new Product("Cheerios", 8.40);
+
+        assertEquals("{\"title\":\"Cheerios\",\"price\":8.4}", givenProduct.toJson());
+        assertEquals(givenProduct, Product.fromJson(givenProduct.toJson()));
+
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        givenProduct.writeJsonTo(buffer);
+        assertEquals(givenProduct, Product.fromJson(buffer.flip()));
+    }
 }
\ No newline at end of file
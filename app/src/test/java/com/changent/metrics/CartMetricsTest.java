@@ -0,0 +1,53 @@
+package com.changent.metrics;
+
+import com.changent.entities.Cart;
+import com.changent.entities.Product;
+import com.changent.services.ProductServiceMockImpl;
+import com.changent.valueobjects.Money;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CartMetricsTest {
+
+    @Test
+    @DisplayName("counts changes and the products a cart could not find")
+    void countsChanges() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        cart.addListener(new CartMetrics(registry));
+
+        cart.addProduct("cheerios", 2);
+        cart.addProduct("unknown", 1);
+        cart.addProducts(Map.of("weetabix", 1, "missing", 1));
+        cart.removeProduct("cheerios", 1);
+        cart.reprice(new Product("Cheerios", Money.of(9.00)));
+
+        MetricsSnapshot result = registry.snapshot();
+        assertEquals(2, result.counter(CartMetrics.ADDED));
+        assertEquals(1, result.counter(CartMetrics.REMOVED));
+        assertEquals(1, result.counter(CartMetrics.REPRICED));
+        assertEquals(2, result.counter(CartMetrics.NOT_FOUND));
+        assertEquals(3, result.histogram(CartMetrics.ITEM_COUNT).count());
+        assertEquals(3, result.histogram(CartMetrics.ITEM_COUNT).max());
+    }
+
+    @Test
+    @DisplayName("times quotes that are priced, not those reused")
+    void timesQuotes() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        cart.addListener(new CartMetrics(registry));
+        cart.addProduct("cheerios", 2);
+
+        cart.quote();
+        cart.quote();
+        cart.addProduct("weetabix", 1);
+        cart.quote();
+
+        assertEquals(2, registry.snapshot().histogram(CartMetrics.QUOTE_NANOS).count());
+    }
+}
@@ -0,0 +1,97 @@
+package com.changent.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+
+    @Test
+    @DisplayName("small values are counted exactly")
+    void smallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 10; value++) histogram.record(value);
+
+        HistogramSnapshot result = histogram.snapshot();
+
+        assertEquals(10, result.count());
+        assertEquals(55, result.sum());
+        assertEquals(5, result.p50());
+        assertEquals(9, result.p90());
+        assertEquals(10, result.max());
+        assertEquals(5.5, result.mean());
+    }
+
+    @Test
+    @DisplayName("percentiles are within 3% over the whole range")
+    void percentilesAreWithinPrecision() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 100_000; value++) histogram.record(value * 1_000);
+
+        HistogramSnapshot result = histogram.snapshot();
+
+        assertEquals(50_000_000, result.p50(), 50_000_000 * 0.03);
+        assertEquals(99_000_000, result.p99(), 99_000_000 * 0.03);
+        assertEquals(99_900_000, result.p999(), 99_900_000 * 0.03);
+        assertEquals(100_000_000, result.max());
+    }
+
+    @Test
+    @DisplayName("every value falls in a bucket whose bounds hold it")
+    void bucketsHoldTheirValues() {
+        long[] givenValues = {0, 1, 63, 64, 65, 127, 128, 1_000_003, Integer.MAX_VALUE, Long.MAX_VALUE};
+
+        for (long value : givenValues) {
+            int bucket = Histogram.bucketOf(value);
+
+            assertTrue(bucket < Histogram.BUCKET_COUNT);
+            assertTrue(Histogram.highestValueIn(bucket) >= value);
+            assertTrue(bucket == 0 || Histogram.highestValueIn(bucket - 1) < value);
+        }
+    }
+
+    @Test
+    @DisplayName("no value is lost when threads record at once")
+    void concurrentRecording() throws Exception {
+        Histogram histogram = new Histogram();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) histogram.record(i % 500);
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(40_000, histogram.snapshot().count());
+        assertEquals(499, histogram.snapshot().max());
+    }
+
+    @Test
+    @DisplayName("an empty or reset histogram reads zero")
+    void emptyAndReset() {
+        Histogram histogram = new Histogram();
+        assertEquals(HistogramSnapshot.EMPTY, histogram.snapshot());
+
+        histogram.record(42);
+        histogram.reset();
+
+        assertEquals(HistogramSnapshot.EMPTY, histogram.snapshot());
+    }
+
+    @Test
+    void recordFailsOnNegativeValue() {
+        assertThrows(IllegalArgumentException.class, () -> new Histogram().record(-1));
+    }
+}
@@ -0,0 +1,51 @@
+package com.changent.metrics;
+
+import com.changent.services.MutableClock;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsRegistryTest {
+
+    @Test
+    @DisplayName("a snapshot reads every counter and histogram by name")
+    void snapshot() {
+        MetricsRegistry registry = new MetricsRegistry(new MutableClock());
+        registry.counter("requests").add(3);
+        registry.counter("requests").increment();
+        registry.histogram("latency").record(250);
+
+        MetricsSnapshot result = registry.snapshot();
+
+        assertEquals(Instant.EPOCH, result.takenAt());
+        assertEquals(4, result.counter("requests"));
+        assertEquals(1, result.histogram("latency").count());
+        assertEquals(0, result.counter("unknown"));
+        assertEquals(HistogramSnapshot.EMPTY, result.histogram("unknown"));
+    }
+
+    @Test
+    @DisplayName("a metric is the same object each time it is looked up")
+    void metricsAreShared() {
+        MetricsRegistry registry = new MetricsRegistry();
+
+        assertSame(registry.counter("requests"), registry.counter("requests"));
+        assertSame(registry.histogram("latency"), registry.histogram("latency"));
+    }
+
+    @Test
+    @DisplayName("a snapshot does not change as metrics do")
+    void snapshotIsImmutable() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("requests").increment();
+        MetricsSnapshot result = registry.snapshot();
+
+        registry.counter("requests").increment();
+
+        assertEquals(1, result.counter("requests"));
+        assertThrows(UnsupportedOperationException.class, () -> result.counters().clear());
+    }
+}
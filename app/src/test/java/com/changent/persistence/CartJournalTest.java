@@ -0,0 +1,229 @@
+package com.changent.persistence;
+
+import com.changent.entities.Cart;
+import com.changent.entities.Item;
+import com.changent.entities.Product;
+import com.changent.entities.TaxCalculator;
+import com.changent.services.ProductServiceMockImpl;
+import com.changent.valueobjects.Money;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CartJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private CartJournal open() throws IOException {
+        return CartJournal.open(directory, new ProductServiceMockImpl(), CartJournal.MIN_SEGMENT_SIZE, Duration.ofMillis(1));
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> JournalSegment.generationOf(file.getFileName().toString()) >= 0).sorted().toList();
+        }
+    }
+
+    @Test
+    @DisplayName("carts survive reopening the journal")
+    void recoversCarts() throws IOException {
+        try (CartJournal journal = open()) {
+            journal.cart(1).addProduct("cheerios", 3);
+            journal.cart(1).removeProduct("cheerios", 1);
+            journal.cart(2).addProduct("weetabix", 1);
+            journal.cart(2).restore("house-brand", new Item(new Product("House Brand", Money.of(1.99)), 4));
+            journal.cart(3);
+        }
+
+        try (CartJournal journal = open()) {
+            assertEquals(Set.of(1L, 2L), journal.cartIds());
+            assertEquals(2, journal.cart(1).getCountForProduct("cheerios"));
+            assertEquals(4, journal.cart(2).getCountForProduct("house-brand"));
+            assertEquals(Money.ofCents(998 + 4 * 199).toUSDollar(), journal.cart(2).getSubtotal());
+        }
+    }
+
+    @Test
+    @DisplayName("repriced lines are recovered at their new price")
+    void recoversReprices() throws IOException {
+        try (CartJournal journal = open()) {
+            journal.cart(1).addProduct("cheerios", 2);
+            journal.cart(1).reprice(new Product("Cheerios", Money.of(9.00)));
+            journal.cart(1).addProduct("cheerios", 1);
+        }
+
+        try (CartJournal journal = open()) {
+            assertEquals(Money.ofCents(3 * 900).toUSDollar(), journal.cart(1).getSubtotal());
+        }
+    }
+
+    @Test
+    @DisplayName("synced changes are recovered without the journal being closed")
+    void recoversSyncedChanges() throws IOException {
+        CartJournal crashed = open();
+        crashed.cart(7).addProduct("frosties", 2);
+        crashed.sync();
+
+        try (CartJournal journal = open()) {
+            assertEquals(2, journal.cart(7).getCountForProduct("frosties"));
+        } finally {
+            crashed.close();
+        }
+    }
+
+    @Test
+    @DisplayName("recovery stops at a torn record")
+    void ignoresTornRecord() throws IOException {
+        try (CartJournal journal = open()) {
+            journal.cart(1).addProduct("cheerios", 1);
+            journal.cart(1).addProduct("cornflakes", 1);
+        }
+
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(header, JournalSegment.HEADER_SIZE);
+            int secondRecord = JournalSegment.HEADER_SIZE + JournalSegment.RECORD_HEADER_SIZE + header.flip().getInt();
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f}), secondRecord + JournalSegment.RECORD_HEADER_SIZE + 5);
+        }
+
+        try (CartJournal journal = open()) {
+            assertEquals(1, journal.cart(1).getCountForProduct("cheerios"));
+            assertEquals(0, journal.cart(1).getCountForProduct("cornflakes"));
+        }
+    }
+
+    @Test
+    @DisplayName("carts are recovered with the journal's TaxCalculator")
+    void recoversWithTaxCalculator() throws IOException {
+        TaxCalculator taxFree = TaxCalculator.flat(0);
+
+        try (CartJournal journal = CartJournal.open(directory, new ProductServiceMockImpl(), taxFree, CartJournal.MIN_SEGMENT_SIZE, Duration.ofMillis(1))) {
+            journal.cart(1).addProduct("cheerios", 2);
+            journal.compact();
+            journal.cart(2).addProduct("weetabix", 1);
+        }
+
+        try (CartJournal journal = CartJournal.open(directory, new ProductServiceMockImpl(), taxFree, CartJournal.MIN_SEGMENT_SIZE, Duration.ofMillis(1))) {
+            assertSame(taxFree, journal.cart(1).taxCalculator());
+            assertSame(taxFree, journal.cart(2).taxCalculator());
+            assertEquals(journal.cart(1).getSubtotal(), journal.cart(1).getTotalPayable());
+        }
+    }
+
+    @Test
+    @DisplayName("replaying a removal from an unknown cart does not make one")
+    void removalDoesNotMakeCart() throws IOException {
+        JournalSegment segment = JournalSegment.create(directory, 0, CartJournal.MIN_SEGMENT_SIZE);
+        segment.append(JournalSegment.REMOVE, 9, "cheerios".getBytes(StandardCharsets.UTF_8), new byte[0], 0, 1);
+        segment.force(segment.position());
+
+        Map<Long, Cart> carts = new HashMap<>();
+        JournalSegment.replay(segments().get(0), carts, () -> new Cart(new ProductServiceMockImpl()));
+
+        assertTrue(carts.isEmpty());
+    }
+
+    @Test
+    @DisplayName("discarded carts are not recovered")
+    void discard() throws IOException {
+        try (CartJournal journal = open()) {
+            Cart cart = journal.cart(1);
+            cart.addProduct("cheerios", 1);
+            journal.discard(1);
+            cart.addProduct("cheerios", 1);
+        }
+
+        try (CartJournal journal = open()) {
+            assertTrue(journal.cartIds().isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("full segments are folded into a snapshot and deleted")
+    @Timeout(30)
+    void compactsFullSegments() throws IOException {
+        try (CartJournal journal = open()) {
+            for (int i = 0; i < 1_000; i++) {
+                journal.cart(i % 10).addProduct("cornflakes", 2);
+                journal.cart(i % 10).removeProduct("cornflakes", 1);
+            }
+            journal.compact();
+
+            // The current segment and the one created ahead to follow it.
+            assertEquals(2, segments().size());
+            assertTrue(Files.exists(directory.resolve(JournalSnapshot.FILE_NAME)));
+        }
+
+        try (CartJournal journal = open()) {
+            assertEquals(10, journal.cartIds().size());
+            for (long cartId = 0; cartId < 10; cartId++) {
+                assertEquals(100, journal.cart(cartId).getCountForProduct("cornflakes"));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("no segment created ahead is left behind once closed")
+    void deletesUnusedSegmentOnClose() throws IOException {
+        try (CartJournal journal = open()) {
+            journal.cart(1).addProduct("cheerios", 1);
+        }
+
+        assertEquals(1, segments().size());
+    }
+
+    @Test
+    @DisplayName("changes are refused once a background commit fails")
+    @Timeout(30)
+    void refusesChangesAfterBackgroundFailure() throws IOException {
+        CartJournal journal = open();
+        Cart cart = journal.cart(1);
+        // The compaction started by the next full segment cannot read this as a snapshot.
+        Files.createDirectory(directory.resolve(JournalSnapshot.FILE_NAME));
+
+        assertThrows(UncheckedIOException.class, () -> {
+            while (true) cart.addProduct("cornflakes", 1);
+        });
+        assertThrows(UncheckedIOException.class, () -> journal.cart(2));
+        assertThrows(IOException.class, journal::sync);
+        assertThrows(IOException.class, journal::close);
+    }
+
+    @Test
+    @DisplayName("one flush covers many changes")
+    void groupsCommits() throws IOException {
+        try (CartJournal journal = CartJournal.open(directory, new ProductServiceMockImpl(), CartJournal.DEFAULT_SEGMENT_SIZE, Duration.ofSeconds(10))) {
+            for (int i = 0; i < 1_000; i++) journal.cart(1).addProduct("cheerios", 1);
+            journal.sync();
+
+            assertEquals(1_000, journal.appendCount());
+            assertEquals(1, journal.syncCount());
+        }
+    }
+
+    @Test
+    void openFailsOnInvalidSegmentSize() {
+        assertThrows(IllegalArgumentException.class,
+                () -> CartJournal.open(directory, new ProductServiceMockImpl(), 16, Duration.ofMillis(1)));
+    }
+}
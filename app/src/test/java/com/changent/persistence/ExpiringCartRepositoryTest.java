@@ -0,0 +1,144 @@
+package com.changent.persistence;
+
+import com.changent.entities.Cart;
+import com.changent.services.MutableClock;
+import com.changent.services.ProductServiceMockImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiringCartRepositoryTest {
+
+    private final MutableClock clock = new MutableClock();
+    private final OffHeapCartRepository delegate = new OffHeapCartRepository(new ProductServiceMockImpl());
+    private final Map<Long, Cart> expired = new LinkedHashMap<>();
+
+    private ExpiringCartRepository repository() {
+        return new ExpiringCartRepository(delegate, Duration.ofMinutes(30), Duration.ofSeconds(1), expired::put, clock);
+    }
+
+    @Test
+    @DisplayName("evicts carts idle for the timeout and tells the listener")
+    void expiresIdleCarts() {
+        ExpiringCartRepository repository = repository();
+        Cart cart = repository.create(1);
+        cart.addProduct("cheerios", 2);
+        repository.save(1, cart);
+        repository.create(2);
+
+        clock.advanceBy(Duration.ofMinutes(30));
+        repository.expire();
+        assertEquals(2, repository.size());
+
+        clock.advanceBy(Duration.ofSeconds(1));
+        repository.expire();
+
+        assertEquals(0, repository.size());
+        assertEquals(2, repository.expiredCount());
+        assertEquals(2, expired.get(1L).getCountForProduct("cheerios"));
+        assertTrue(expired.containsKey(2L));
+    }
+
+    @Test
+    @DisplayName("only the latest instance got for a cart is listened to")
+    void listensToLatestInstance() {
+        ExpiringCartRepository repository = repository();
+        Cart stale = repository.create(1);
+
+        clock.advanceBy(Duration.ofMinutes(20));
+        Cart latest = repository.get(1).orElseThrow();
+        assertNotSame(stale, latest);
+
+        clock.advanceBy(Duration.ofMinutes(20));
+        stale.addProduct("cheerios", 1);
+
+        clock.advanceBy(Duration.ofMinutes(11));
+        repository.expire();
+        assertTrue(expired.containsKey(1L));
+    }
+
+    @Test
+    @DisplayName("a cart got and dropped can be collected while it is still tracked")
+    void doesNotHoldCartsHandedOut() throws InterruptedException {
+        ExpiringCartRepository repository = repository();
+        Cart created = repository.create(1);
+        created.addProduct("cheerios", 1);
+        repository.save(1, created);
+        created = null;
+        WeakReference<Cart> dropped = new WeakReference<>(repository.get(1).orElseThrow());
+
+        for (int i = 0; i < 50 && dropped.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(dropped.get());
+
+        clock.advanceBy(Duration.ofMinutes(31));
+        repository.expire();
+        assertEquals(1, expired.get(1L).getCountForProduct("cheerios"));
+    }
+
+    @Test
+    @DisplayName("changing, getting or saving a cart keeps it alive")
+    void touchesKeepCartsAlive() {
+        ExpiringCartRepository repository = repository();
+        Cart changed = repository.create(1);
+        repository.create(2);
+        repository.create(3);
+        repository.create(4);
+
+        clock.advanceBy(Duration.ofMinutes(20));
+        changed.addProduct("cheerios", 1);
+        repository.get(2);
+        repository.save(3, new Cart(new ProductServiceMockImpl()));
+
+        clock.advanceBy(Duration.ofMinutes(11));
+        repository.expire();
+        assertEquals(Map.of(4L, expired.get(4L)), expired);
+
+        clock.advanceBy(Duration.ofMinutes(20));
+        repository.expire();
+        assertEquals(4, expired.size());
+    }
+
+    @Test
+    @DisplayName("evicted carts are not reported as expired")
+    void evictForgetsCart() {
+        ExpiringCartRepository repository = repository();
+        repository.create(1);
+
+        assertTrue(repository.evict(1));
+        clock.advanceBy(Duration.ofHours(1));
+        repository.expire();
+
+        assertTrue(expired.isEmpty());
+    }
+
+    @Test
+    @DisplayName("expires many carts, each once")
+    void expiresManyCarts() {
+        ExpiringCartRepository repository = repository();
+        for (long cartId = 0; cartId < 100_000; cartId++) {
+            repository.create(cartId);
+            if (cartId % 1_000 == 999) clock.advanceBy(Duration.ofSeconds(1));
+        }
+
+        clock.advanceBy(Duration.ofMinutes(31));
+        repository.expire();
+
+        assertEquals(100_000, expired.size());
+        assertEquals(0, delegate.size());
+    }
+
+    @Test
+    void constructionFailsOnInvalidTimeout() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ExpiringCartRepository(delegate, Duration.ZERO, (cartId, cart) -> {}));
+    }
+}
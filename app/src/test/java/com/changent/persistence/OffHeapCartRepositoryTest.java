@@ -0,0 +1,169 @@
+package com.changent.persistence;
+
+import com.changent.entities.Cart;
+import com.changent.entities.TaxCalculator;
+import com.changent.services.MappedCatalogBuilder;
+import com.changent.services.MappedCatalogProductService;
+import com.changent.services.ProductServiceMockImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapCartRepositoryTest {
+
+    @Test
+    @DisplayName("saved carts are materialized with their items and totals")
+    void saveAndGet() {
+        OffHeapCartRepository repository = new OffHeapCartRepository(new ProductServiceMockImpl());
+        Cart cart = repository.create(42);
+        cart.addProduct("cheerios", 2);
+        cart.addProduct("weetabix", 1);
+        repository.save(42, cart);
+
+        Cart result = repository.get(42).orElseThrow();
+
+        assertNotSame(cart, result);
+        assertEquals(2, result.getCountForProduct("cheerios"));
+        assertEquals(1, result.getCountForProduct("weetabix"));
+        assertEquals(cart.getTotalPayable(), result.getTotalPayable());
+    }
+
+    @Test
+    @DisplayName("changes to a materialized cart are kept only once it is saved")
+    void changesNeedSaving() {
+        OffHeapCartRepository repository = new OffHeapCartRepository(new ProductServiceMockImpl());
+        repository.create(1).addProduct("cheerios", 1);
+
+        assertEquals(0, repository.get(1).orElseThrow().getTotalProductCount());
+    }
+
+    @Test
+    @DisplayName("carts are made and materialized with the repository's TaxCalculator")
+    void keepsTaxCalculator() {
+        TaxCalculator taxFree = TaxCalculator.flat(0);
+        OffHeapCartRepository repository = new OffHeapCartRepository(new ProductServiceMockImpl(), null, taxFree);
+        Cart cart = repository.create(1);
+        cart.addProduct("cheerios", 1);
+        repository.save(1, cart);
+
+        Cart result = repository.get(1).orElseThrow();
+
+        assertSame(taxFree, result.taxCalculator());
+        assertEquals(cart.getSubtotal(), result.getTotalPayable());
+        assertThrows(IllegalArgumentException.class, () -> repository.save(2, new Cart(new ProductServiceMockImpl())));
+    }
+
+    @Test
+    void getMissingCart() {
+        OffHeapCartRepository repository = new OffHeapCartRepository(new ProductServiceMockImpl());
+
+        assertTrue(repository.get(1).isEmpty());
+        assertFalse(repository.evict(1));
+    }
+
+    @Test
+    void createFailsWhenCartExists() {
+        OffHeapCartRepository repository = new OffHeapCartRepository(new ProductServiceMockImpl());
+        repository.create(1);
+
+        assertThrows(IllegalArgumentException.class, () -> repository.create(1));
+    }
+
+    @Test
+    @DisplayName("evicted carts are gone and their memory is reused")
+    void evictReusesMemory() {
+        OffHeapCartRepository repository = new OffHeapCartRepository(new ProductServiceMockImpl());
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        cart.addProduct("cornflakes", 3);
+
+        for (long cartId = 0; cartId < 10_000; cartId++) repository.save(cartId, cart);
+        long reserved = repository.offHeapBytes();
+        for (long cartId = 0; cartId < 10_000; cartId += 2) assertTrue(repository.evict(cartId));
+        for (long cartId = 10_000; cartId < 15_000; cartId++) repository.save(cartId, cart);
+
+        assertEquals(reserved, repository.offHeapBytes());
+        assertEquals(10_000, repository.size());
+        assertTrue(repository.get(0).isEmpty());
+        for (long cartId = 1; cartId < 15_000; cartId += 2) {
+            assertEquals(3, repository.get(cartId).orElseThrow().getCountForProduct("cornflakes"));
+        }
+    }
+
+    @Test
+    @DisplayName("a save replaces the stored cart, whatever its new size")
+    void saveReplaces() {
+        OffHeapCartRepository repository = new OffHeapCartRepository(new ProductServiceMockImpl());
+        Cart cart = repository.create(1);
+        for (String product : List.of("cheerios", "cornflakes", "frosties", "shreddies", "weetabix")) {
+            cart.addProduct(product, 1);
+        }
+        repository.save(1, cart);
+        repository.save(1, new Cart(new ProductServiceMockImpl()));
+
+        assertEquals(0, repository.get(1).orElseThrow().getTotalProductCount());
+        assertEquals(1, repository.size());
+    }
+
+    @Test
+    @DisplayName("stores carts by catalog id when given the catalog")
+    void storesByCatalogId(@TempDir Path tempDir) throws IOException {
+        Path catalogFile = tempDir.resolve("catalog.bin");
+        MappedCatalogBuilder.write(Map.of("cheerios", new ProductServiceMockImpl().getBy("cheerios").orElseThrow()), catalogFile);
+        MappedCatalogProductService catalog = MappedCatalogProductService.open(catalogFile);
+
+        OffHeapCartRepository repository = new OffHeapCartRepository(catalog, catalog);
+        Cart cart = repository.create(1);
+        cart.addProduct("cheerios", 1);
+        repository.save(1, cart);
+        cart = repository.get(1).orElseThrow();
+        cart.addProduct("cheerios", 4);
+        repository.save(1, cart);
+
+        assertEquals(5, repository.get(1).orElseThrow().getCountForProduct("cheerios"));
+    }
+
+    @Test
+    @DisplayName("carts in different stripes are saved in parallel without loss")
+    @Timeout(60)
+    void concurrentSaves() throws Exception {
+        final int givenThreads = 8;
+        final int givenCartsPerThread = 20_000;
+        OffHeapCartRepository repository = new OffHeapCartRepository(new ProductServiceMockImpl());
+
+        ExecutorService executor = Executors.newFixedThreadPool(givenThreads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < givenThreads; t++) {
+                final long firstCartId = (long) t * givenCartsPerThread;
+                workers.add(executor.submit(() -> {
+                    for (long cartId = firstCartId; cartId < firstCartId + givenCartsPerThread; cartId++) {
+                        Cart cart = repository.create(cartId);
+                        cart.addProduct("frosties", (int) (cartId % 7) + 1);
+                        repository.save(cartId, cart);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) worker.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(givenThreads * givenCartsPerThread, repository.size());
+        for (long cartId = 0; cartId < givenThreads * givenCartsPerThread; cartId++) {
+            assertEquals((int) (cartId % 7) + 1, repository.get(cartId).orElseThrow().getCountForProduct("frosties"));
+        }
+    }
+}
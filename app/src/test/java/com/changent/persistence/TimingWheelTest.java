@@ -0,0 +1,69 @@
+package com.changent.persistence;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    private static List<Long> advance(TimingWheel wheel, long nowMillis) {
+        List<Long> fired = new ArrayList<>();
+        wheel.advanceTo(nowMillis, fired::add);
+        return fired;
+    }
+
+    @Test
+    @DisplayName("fires ids once their deadline has passed, in deadline order")
+    void firesInOrder() {
+        TimingWheel wheel = new TimingWheel(10, 0);
+        wheel.schedule(3, 250);
+        wheel.schedule(1, 15);
+        wheel.schedule(2, 100);
+
+        assertEquals(List.of(), advance(wheel, 15));
+        assertEquals(List.of(1L), advance(wheel, 20));
+        assertEquals(List.of(2L, 3L), advance(wheel, 260));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    @DisplayName("ids on higher levels move down and fire on time")
+    void cascades() {
+        final long givenTick = 1;
+        TimingWheel wheel = new TimingWheel(givenTick, 0);
+        long[] givenDeadlines = {63, 64, 65, 4_095, 4_096, 4_097, 300_000, 16_777_000};
+        for (long deadline : givenDeadlines) wheel.schedule(deadline, deadline);
+
+        for (long deadline : givenDeadlines) {
+            assertEquals(List.of(), advance(wheel, deadline));
+            assertEquals(List.of(deadline), advance(wheel, deadline + givenTick));
+        }
+    }
+
+    @Test
+    @DisplayName("ids beyond the top level fire early at its end, to be rescheduled")
+    void parksDistantIds() {
+        TimingWheel wheel = new TimingWheel(1, 0);
+        wheel.schedule(1, 1L << 40);
+
+        assertEquals(List.of(1L), advance(wheel, 1L << 24));
+    }
+
+    @Test
+    @DisplayName("past deadlines fire on the next tick")
+    void pastDeadline() {
+        TimingWheel wheel = new TimingWheel(10, 1_000);
+        wheel.schedule(1, 0);
+
+        assertEquals(List.of(1L), advance(wheel, 1_010));
+    }
+
+    @Test
+    void constructionFailsOnInvalidTick() {
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel(0, 0));
+    }
+}
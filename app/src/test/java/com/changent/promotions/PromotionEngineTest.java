@@ -0,0 +1,148 @@
+package com.changent.promotions;
+
+import com.changent.entities.Cart;
+import com.changent.entities.Discount;
+import com.changent.entities.Product;
+import com.changent.services.ProductServiceMockImpl;
+import com.changent.valueobjects.Money;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromotionEngineTest {
+
+    private static final Promotion CHEERIOS_3_FOR_2 = new MultiBuy("cheerios-3-for-2", "Cheerios", 3, 2);
+    private static final Promotion BREAKFAST_BUNDLE = new Bundle("breakfast", List.of("Weetabix", "Frosties"), Money.of(12.00));
+
+    private static Cart attachedCart(PromotionEngine engine) {
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        engine.attach(cart);
+        return cart;
+    }
+
+    @Test
+    @DisplayName("a multibuy discounts each whole group as the quantity changes")
+    void multiBuy() {
+        PromotionEngine engine = new PromotionEngine(List.of(CHEERIOS_3_FOR_2));
+        Cart cart = attachedCart(engine);
+
+        cart.addProduct("cheerios", 2);
+        assertTrue(cart.discounts().isEmpty());
+
+        cart.addProduct("cheerios", 5);
+        assertEquals(List.of(new Discount("cheerios-3-for-2", "Cheerios", Money.of(16.86))), cart.discounts());
+        assertEquals(new BigDecimal("42.15"), cart.getSubtotal().get());
+
+        cart.removeProduct("cheerios", 5);
+        assertTrue(cart.discounts().isEmpty());
+        assertEquals(new BigDecimal("16.86"), cart.getSubtotal().get());
+    }
+
+    @Test
+    @DisplayName("a bundle discounts each complete set down to its price")
+    void bundle() {
+        PromotionEngine engine = new PromotionEngine(List.of(BREAKFAST_BUNDLE));
+        Cart cart = attachedCart(engine);
+
+        cart.addProduct("weetabix", 2);
+        assertTrue(cart.discounts().isEmpty());
+
+        cart.addProduct("frosties", 1);
+        assertEquals(Money.of(2.97).toUSDollar(), cart.getDiscount());
+        assertEquals(new BigDecimal("21.98"), cart.getSubtotal().get());
+        assertEquals(cart.quote().total(), cart.getTotalPayable());
+
+        cart.removeProduct("frosties", 1);
+        assertEquals(Money.ZERO.toUSDollar(), cart.getDiscount());
+    }
+
+    @Test
+    @DisplayName("a reprice re-evaluates the title's promotions")
+    void reprice() {
+        PromotionEngine engine = new PromotionEngine(List.of(CHEERIOS_3_FOR_2));
+        Cart cart = attachedCart(engine);
+        cart.addProduct("cheerios", 3);
+
+        cart.reprice(new Product("Cheerios", Money.of(9.00)));
+
+        assertEquals(Money.of(9.00).toUSDollar(), cart.getDiscount());
+        assertEquals(new BigDecimal("18.00"), cart.getSubtotal().get());
+    }
+
+    @Test
+    @DisplayName("attaching applies the promotions to the lines already in the cart")
+    void attachExistingCart() {
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        cart.addProduct("cheerios", 3);
+        cart.addProduct("weetabix", 1);
+        cart.addProduct("frosties", 1);
+
+        new PromotionEngine(List.of(CHEERIOS_3_FOR_2, BREAKFAST_BUNDLE)).attach(cart);
+
+        assertEquals(2, cart.discounts().size());
+        assertEquals(Money.of(11.40).toUSDollar(), cart.getDiscount());
+    }
+
+    @Test
+    @DisplayName("a detached cart keeps its discounts but no longer follows changes")
+    void detach() {
+        PromotionEngine engine = new PromotionEngine(List.of(CHEERIOS_3_FOR_2));
+        Cart cart = attachedCart(engine);
+        cart.addProduct("cheerios", 3);
+
+        engine.detach(cart);
+        cart.addProduct("cheerios", 3);
+
+        assertEquals(0, engine.attachedCount());
+        assertEquals(Money.of(8.43).toUSDollar(), cart.getDiscount());
+    }
+
+    @Test
+    @DisplayName("a cart dropped without being detached is not kept attached")
+    void releasesDroppedCarts() throws InterruptedException {
+        PromotionEngine engine = new PromotionEngine(List.of(CHEERIOS_3_FOR_2));
+        WeakReference<Cart> dropped = new WeakReference<>(attachedCart(engine));
+
+        for (int i = 0; i < 50 && dropped.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(dropped.get());
+        assertEquals(0, engine.attachedCount());
+    }
+
+    @Test
+    @DisplayName("only the promotions of the changed title are evaluated")
+    void evaluatesOnlyTouchedPromotions() {
+        List<Promotion> givenPromotions = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) givenPromotions.add(new MultiBuy("other-" + i, "Other " + i, 2, 1));
+        givenPromotions.add(CHEERIOS_3_FOR_2);
+        PromotionEngine engine = new PromotionEngine(givenPromotions);
+        Cart cart = attachedCart(engine);
+
+        cart.addProduct("cheerios", 3);
+        cart.addProduct("weetabix", 2);
+
+        assertEquals(5_001, engine.promotionCount());
+        assertEquals(List.of(new Discount("cheerios-3-for-2", "Cheerios", Money.of(8.43))), cart.discounts());
+    }
+
+    @Test
+    void constructionFailsOnDuplicateIds() {
+        assertThrows(IllegalArgumentException.class, () -> new PromotionEngine(List.of(CHEERIOS_3_FOR_2, CHEERIOS_3_FOR_2)));
+    }
+
+    @Test
+    void constructionFailsOnInvalidPromotions() {
+        assertThrows(IllegalArgumentException.class, () -> new MultiBuy("id", "Cheerios", 2, 2));
+        assertThrows(IllegalArgumentException.class, () -> new Bundle("id", List.of("Cheerios"), Money.of(1.00)));
+        assertThrows(NullPointerException.class, () -> new PromotionEngine(null));
+    }
+}
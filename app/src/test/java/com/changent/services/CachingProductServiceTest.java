@@ -0,0 +1,140 @@
+package com.changent.services;
+
+import com.changent.entities.Product;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingProductServiceTest {
+
+    private final CountingProductService delegate = new CountingProductService(new ProductServiceMockImpl());
+    private final MutableClock clock = new MutableClock();
+
+    private CachingProductService cacheOf(int maxEntries) {
+        return new CachingProductService(delegate, maxEntries, Duration.ofMinutes(5), Duration.ofSeconds(30), clock);
+    }
+
+    @Test
+    @DisplayName("repeated lookups of a title call the delegate once")
+    void cachesFoundProduct() {
+        CachingProductService service = cacheOf(10);
+
+        Optional<Product> first = service.getBy("cornflakes");
+        Optional<Product> second = service.getBy("cornflakes");
+
+        assertEquals(first, second);
+        assertEquals(1, delegate.calls());
+        assertEquals(1, service.hitCount());
+        assertEquals(1, service.missCount());
+    }
+
+    @Test
+    @DisplayName("not found results are cached for the shorter ttl")
+    void cachesNotFound() {
+        CachingProductService service = cacheOf(10);
+
+        assertTrue(service.getBy("invalid-product-title").isEmpty());
+        assertTrue(service.getBy("invalid-product-title").isEmpty());
+        assertEquals(1, delegate.calls());
+
+        clock.advanceBy(Duration.ofSeconds(31));
+
+        assertTrue(service.getBy("invalid-product-title").isEmpty());
+        assertEquals(2, delegate.calls());
+    }
+
+    @Test
+    @DisplayName("found products expire after the ttl")
+    void expiresFoundProduct() {
+        CachingProductService service = cacheOf(10);
+
+        service.getBy("cornflakes");
+        clock.advanceBy(Duration.ofMinutes(4));
+        service.getBy("cornflakes");
+        assertEquals(1, delegate.calls());
+
+        clock.advanceBy(Duration.ofMinutes(2));
+        service.getBy("cornflakes");
+        assertEquals(2, delegate.calls());
+    }
+
+    @Test
+    @DisplayName("evicts the least recently used title when full")
+    void evictsLeastRecentlyUsed() {
+        CachingProductService service = cacheOf(2);
+
+        service.getBy("cornflakes");
+        service.getBy("weetabix");
+        service.getBy("cornflakes");
+        service.getBy("frosties");
+
+        assertEquals(2, service.size());
+        assertEquals(1, service.evictionCount());
+
+        service.getBy("cornflakes");
+        assertEquals(3, delegate.calls());
+
+        service.getBy("weetabix");
+        assertEquals(4, delegate.calls());
+    }
+
+    @Test
+    @DisplayName("invalidating a title forces a new lookup")
+    void invalidate() {
+        CachingProductService service = cacheOf(10);
+
+        service.getBy("cornflakes");
+        service.invalidate("cornflakes");
+        service.getBy("cornflakes");
+
+        assertEquals(2, delegate.calls());
+    }
+
+    @Test
+    @DisplayName("a lookup the cache was invalidated during is not cached")
+    void skipsLookupStaleByInvalidation() {
+        CachingProductService[] service = new CachingProductService[1];
+        ProductService invalidatedWhileLookingUp = new ProductService() {
+            @Override
+            public Optional<Product> getBy(String title) {
+                Optional<Product> result = delegate.getBy(title);
+                service[0].invalidate(title);
+                return result;
+            }
+        };
+        service[0] = new CachingProductService(invalidatedWhileLookingUp, 10, Duration.ofMinutes(5), Duration.ofSeconds(30), clock);
+
+        assertTrue(service[0].getBy("cornflakes").isPresent());
+
+        assertEquals(0, service[0].size());
+    }
+
+    @Test
+    @DisplayName("the ttl runs from when the lookup answered, not when it started")
+    void ttlStartsAfterSlowLookup() {
+        ProductService slow = title -> {
+            clock.advanceBy(Duration.ofMinutes(10));
+            return delegate.getBy(title);
+        };
+        CachingProductService service = new CachingProductService(slow, 10, Duration.ofMinutes(5), Duration.ofSeconds(30), clock);
+
+        service.getBy("cornflakes");
+        clock.advanceBy(Duration.ofMinutes(4));
+        service.getBy("cornflakes");
+
+        assertEquals(1, delegate.calls());
+        assertEquals(1, service.hitCount());
+    }
+
+    @Test
+    void constructionFailsWhenInvalid() {
+        assertThrows(NullPointerException.class,
+                () -> new CachingProductService(null, 1, Duration.ZERO, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CachingProductService(delegate, 0, Duration.ZERO, Duration.ZERO));
+    }
+}
@@ -0,0 +1,196 @@
+package com.changent.services;
+
+import com.changent.entities.Product;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.changent.services.CircuitBreakerProductService.State.*;
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(WireMockExtension.class)
+class CircuitBreakerProductServiceTest {
+
+    private static final Product CHEERIOS = new Product("Cheerios", 8.43);
+
+    /**
+     * Answers with cheerios, "not found", or fails, as set, counting the calls made.
+     */
+    private static final class ScriptedCatalog implements CatalogClient {
+        volatile String answer = "found";
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public CompletableFuture<Optional<Product>> fetch(String productName, Duration timeout) {
+            calls.incrementAndGet();
+
+            return switch (answer) {
+                case "found" -> CompletableFuture.completedFuture(Optional.of(CHEERIOS));
+                case "notFound" -> CompletableFuture.completedFuture(Optional.empty());
+                default -> CompletableFuture.failedFuture(new ProductUnavailableException("Catalog is down."));
+            };
+        }
+    }
+
+    private final ScriptedCatalog upstream = new ScriptedCatalog();
+    private final MutableClock clock = new MutableClock();
+
+    private CircuitBreakerProductService breaker(ProductService fallback) {
+        return new CircuitBreakerProductService(upstream, 4, 0.5, Duration.ofSeconds(30), Duration.ofSeconds(1), fallback, clock);
+    }
+
+    private static void lookUpTimes(ProductService service, int times) {
+        for (int i = 0; i < times; i++) service.getBy("cheerios");
+    }
+
+    @Test
+    @DisplayName("opens once the failures in a full window reach the threshold")
+    void opensOnFailureRate() {
+        CircuitBreakerProductService service = breaker(new ProductServiceMockImpl());
+
+        lookUpTimes(service, 2);
+        upstream.answer = "error";
+        lookUpTimes(service, 1);
+        assertEquals(CLOSED, service.state());
+
+        lookUpTimes(service, 1);
+
+        assertEquals(OPEN, service.state());
+        assertEquals(4, upstream.calls.get());
+    }
+
+    @Test
+    @DisplayName("an open circuit fails fast without calling the catalog")
+    void openCircuitFailsFast() {
+        CircuitBreakerProductService service = breaker(new ProductServiceMockImpl());
+        upstream.answer = "error";
+        lookUpTimes(service, 4);
+
+        CompletionException result = assertThrows(CompletionException.class,
+                () -> service.fetch("cheerios", Duration.ofSeconds(1)).join());
+
+        assertInstanceOf(CircuitOpenException.class, result.getCause());
+        assertEquals(4, upstream.calls.get());
+        assertEquals(1, service.rejectedCount());
+    }
+
+    @Test
+    @DisplayName("while open, lookups are answered by the fallback")
+    void openCircuitUsesFallback() {
+        CircuitBreakerProductService service = breaker(new ProductServiceMockImpl());
+        upstream.answer = "error";
+        lookUpTimes(service, 4);
+
+        assertEquals(Optional.of(new Product("Weetabix", 9.98)), service.getBy("weetabix"));
+        assertEquals(Optional.of(new Product("Weetabix", 9.98)), service.getByAsync("weetabix").join());
+        assertEquals(4, upstream.calls.get());
+        assertEquals(6, service.fallbackCount());
+    }
+
+    @Test
+    @DisplayName("without a fallback, an open circuit finds nothing")
+    void failFastWithoutFallback() {
+        CircuitBreakerProductService service = new CircuitBreakerProductService(upstream, 4, 0.5, Duration.ofSeconds(30), Duration.ofSeconds(1));
+        upstream.answer = "error";
+        lookUpTimes(service, 4);
+        upstream.answer = "found";
+
+        assertTrue(service.getBy("cheerios").isEmpty());
+    }
+
+    @Test
+    @DisplayName("products the catalog does not have are not failures")
+    void notFoundIsNotAFailure() {
+        CircuitBreakerProductService service = breaker(new ProductServiceMockImpl());
+        upstream.answer = "notFound";
+
+        lookUpTimes(service, 10);
+
+        assertEquals(CLOSED, service.state());
+        assertEquals(0, service.fallbackCount());
+    }
+
+    @Test
+    @DisplayName("after the open duration one probe closes the circuit if it answers")
+    void probeCloses() {
+        CircuitBreakerProductService service = breaker(new ProductServiceMockImpl());
+        upstream.answer = "error";
+        lookUpTimes(service, 4);
+
+        clock.advanceBy(Duration.ofSeconds(30));
+        assertEquals(HALF_OPEN, service.state());
+        upstream.answer = "found";
+
+        assertEquals(Optional.of(CHEERIOS), service.getBy("cheerios"));
+        assertEquals(CLOSED, service.state());
+        assertEquals(5, upstream.calls.get());
+    }
+
+    @Test
+    @DisplayName("a failed probe opens the circuit again")
+    void failedProbeReopens() {
+        CircuitBreakerProductService service = breaker(new ProductServiceMockImpl());
+        upstream.answer = "error";
+        lookUpTimes(service, 4);
+        clock.advanceBy(Duration.ofSeconds(30));
+
+        lookUpTimes(service, 3);
+
+        assertEquals(OPEN, service.state());
+        assertEquals(5, upstream.calls.get());
+    }
+
+    @Test
+    @DisplayName("only one probe is let through at a time")
+    void oneProbeAtATime() {
+        CompletableFuture<Optional<Product>> pending = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+        CatalogClient slow = (productName, timeout) -> calls.incrementAndGet() <= 4
+                ? CompletableFuture.failedFuture(new ProductUnavailableException("Catalog is down."))
+                : pending;
+        CircuitBreakerProductService service = new CircuitBreakerProductService(slow, 4, 0.5, Duration.ofSeconds(30), Duration.ofSeconds(1), new ProductServiceMockImpl(), clock);
+        lookUpTimes(service, 4);
+        clock.advanceBy(Duration.ofSeconds(30));
+
+        CompletableFuture<Optional<Product>> probe = service.fetch("cheerios", Duration.ofSeconds(1));
+        CompletionException rejected = assertThrows(CompletionException.class,
+                () -> service.fetch("cheerios", Duration.ofSeconds(1)).join());
+        pending.complete(Optional.of(CHEERIOS));
+
+        assertInstanceOf(CircuitOpenException.class, rejected.getCause());
+        assertEquals(Optional.of(CHEERIOS), probe.join());
+        assertEquals(CLOSED, service.state());
+    }
+
+    @Test
+    @DisplayName("a failing HTTP catalog stops being called once the circuit opens")
+    void stopsCallingFailingCatalog(WireMockRuntimeInfo wireMock) {
+        stubFor(get(urlEqualTo("/cornflakes.json")).willReturn(aResponse().withStatus(503)));
+        ProductServiceImpl catalog = new ProductServiceImpl(URI.create(wireMock.getHttpBaseUrl()), Duration.ofSeconds(2));
+        CircuitBreakerProductService service = new CircuitBreakerProductService(catalog, 4, 0.5, Duration.ofMinutes(1), Duration.ofSeconds(1));
+
+        for (int i = 0; i < 20; i++) assertTrue(service.getBy("cornflakes").isEmpty());
+
+        assertEquals(OPEN, service.state());
+        assertEquals(16, service.rejectedCount());
+        verify(4, getRequestedFor(urlEqualTo("/cornflakes.json")));
+    }
+
+    @Test
+    void constructionFailsOnInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreakerProductService(upstream, 0, 0.5, Duration.ZERO, Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreakerProductService(upstream, 4, 0, Duration.ZERO, Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreakerProductService(upstream, 4, 0.5, Duration.ZERO, Duration.ZERO));
+        assertThrows(NullPointerException.class, () -> new CircuitBreakerProductService(null, 4, 0.5, Duration.ZERO, Duration.ofSeconds(1)));
+    }
+}
@@ -0,0 +1,133 @@
+package com.changent.services;
+
+import com.changent.entities.Product;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoalescingProductServiceTest {
+
+    @Test
+    @DisplayName("concurrent lookups of a title share one delegate call")
+    @Timeout(10)
+    void collapsesConcurrentLookups() throws Exception {
+        final int givenCallers = 8;
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger delegateCalls = new AtomicInteger();
+        ProductService mock = new ProductServiceMockImpl();
+
+        CoalescingProductService service = new CoalescingProductService(title -> {
+            delegateCalls.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return mock.getBy(title);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(givenCallers);
+        try {
+            List<Future<Optional<Product>>> results = new ArrayList<>();
+            for (int i = 0; i < givenCallers; i++) {
+                results.add(executor.submit(() -> service.getBy("frosties")));
+            }
+
+            while (service.collapsedCount() < givenCallers - 1) Thread.onSpinWait();
+            release.countDown();
+
+            Optional<Product> first = results.get(0).get();
+            for (Future<Optional<Product>> result : results) {
+                assertSame(first.get(), result.get().get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, delegateCalls.get());
+        assertEquals(1, service.fetchCount());
+        assertEquals(givenCallers - 1, service.collapsedCount());
+        assertEquals(0, service.inFlightCount());
+    }
+
+    @Test
+    @DisplayName("sequential lookups each reach the delegate")
+    void doesNotCache() {
+        CountingProductService delegate = new CountingProductService(new ProductServiceMockImpl());
+        CoalescingProductService service = new CoalescingProductService(delegate);
+
+        service.getBy("frosties");
+        service.getBy("frosties");
+
+        assertEquals(2, delegate.calls());
+        assertEquals(0, service.collapsedCount());
+    }
+
+    @Test
+    @DisplayName("waiters see the failure of the shared call")
+    @Timeout(10)
+    void sharesFailure() {
+        CompletableFuture<Optional<Product>> upstream = new CompletableFuture<>();
+        CoalescingProductService service = new CoalescingProductService(new ProductService() {
+            @Override
+            public Optional<Product> getBy(String title) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public CompletableFuture<Optional<Product>> getByAsync(String title) {
+                return upstream;
+            }
+        });
+
+        CompletableFuture<Optional<Product>> first = service.getByAsync("frosties");
+        CompletableFuture<Optional<Product>> second = service.getByAsync("frosties");
+        upstream.completeExceptionally(new IllegalStateException("upstream failed"));
+
+        assertTrue(first.isCompletedExceptionally());
+        assertTrue(second.isCompletedExceptionally());
+        assertEquals(1, service.collapsedCount());
+        assertEquals(0, service.inFlightCount());
+    }
+
+    @Test
+    @DisplayName("a delegate that throws instead of returning a future does not block later lookups")
+    @Timeout(10)
+    void releasesLookupWhenDelegateThrows() {
+        AtomicInteger calls = new AtomicInteger();
+        CoalescingProductService service = new CoalescingProductService(new ProductService() {
+            @Override
+            public Optional<Product> getBy(String title) {
+                throw new AssertionError("delegate broke");
+            }
+
+            @Override
+            public CompletableFuture<Optional<Product>> getByAsync(String title) {
+                if (calls.incrementAndGet() == 1) throw new IllegalStateException("delegate broke");
+                return CompletableFuture.completedFuture(Optional.empty());
+            }
+        });
+
+        assertTrue(service.getByAsync("frosties").isCompletedExceptionally());
+        assertEquals(Optional.empty(), service.getByAsync("frosties").join());
+        assertThrows(AssertionError.class, () -> service.getBy("frosties"));
+        assertEquals(0, service.inFlightCount());
+    }
+
+    @Test
+    void constructionFailsWhenNullService() {
+        assertThrows(NullPointerException.class, () -> new CoalescingProductService(null));
+    }
+}
@@ -0,0 +1,26 @@
+package com.changent.services;
+
+import com.changent.entities.Product;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CountingProductService implements ProductService {
+
+    public CountingProductService(ProductService delegate) {
+        this.delegate = delegate;
+    }
+
+    private final ProductService delegate;
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    public Optional<Product> getBy(String title) {
+        calls.incrementAndGet();
+        return delegate.getBy(title);
+    }
+
+    public int calls() {
+        return calls.get();
+    }
+}
@@ -0,0 +1,274 @@
+package com.changent.services;
+
+import com.changent.entities.Product;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(WireMockExtension.class)
+class HedgingProductServiceTest {
+
+    private static final String CORN_FLAKES = "{\"title\": \"Corn Flakes\", \"price\": 2.52}";
+
+    private static HedgingProductService serviceFor(WireMockRuntimeInfo wireMock, Duration initialDelay) {
+        ProductServiceImpl upstream = new ProductServiceImpl(URI.create(wireMock.getHttpBaseUrl()), Duration.ofSeconds(5));
+        return new HedgingProductService(upstream, 95, initialDelay, Duration.ofSeconds(5));
+    }
+
+    /**
+     * The first request for cornflakes is answered as given; later ones at once.
+     */
+    private static void stubFirstThenFast(ResponseDefinitionBuilder first) {
+        stubFor(get(urlEqualTo("/cornflakes.json"))
+                .inScenario("hedge")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willSetStateTo("answered")
+                .willReturn(first));
+        stubFor(get(urlEqualTo("/cornflakes.json"))
+                .inScenario("hedge")
+                .whenScenarioStateIs("answered")
+                .willReturn(aResponse().withStatus(200).withBody(CORN_FLAKES)));
+    }
+
+    @Test
+    @DisplayName("a lookup answered within the hedge delay sends one request")
+    void fastLookupIsNotHedged(WireMockRuntimeInfo wireMock) {
+        stubFor(get(urlEqualTo("/cornflakes.json")).willReturn(aResponse().withStatus(200).withBody(CORN_FLAKES)));
+        HedgingProductService service = serviceFor(wireMock, Duration.ofSeconds(2));
+
+        Optional<Product> result = service.getBy("cornflakes");
+
+        assertEquals("Corn Flakes", result.orElseThrow().title());
+        assertEquals(0, service.hedgeCount());
+        verify(1, getRequestedFor(urlEqualTo("/cornflakes.json")));
+    }
+
+    @Test
+    @DisplayName("a slow lookup is hedged and the faster answer is used")
+    void slowLookupIsHedged(WireMockRuntimeInfo wireMock) {
+        stubFirstThenFast(aResponse().withStatus(200).withFixedDelay(3000).withBody(CORN_FLAKES));
+        HedgingProductService service = serviceFor(wireMock, Duration.ofMillis(100));
+
+        long start = System.nanoTime();
+        Optional<Product> result = service.getBy("cornflakes");
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertEquals("Corn Flakes", result.orElseThrow().title());
+        assertTrue(elapsed.compareTo(Duration.ofMillis(2000)) < 0, "took " + elapsed);
+        assertEquals(1, service.hedgeCount());
+        verify(2, getRequestedFor(urlEqualTo("/cornflakes.json")));
+    }
+
+    @Test
+    @DisplayName("the request that loses to the hedge is aborted")
+    void losingRequestIsCancelled(WireMockRuntimeInfo wireMock) throws InterruptedException {
+        stubFirstThenFast(aResponse().withStatus(200).withFixedDelay(3000).withBody(CORN_FLAKES));
+        SendRecordingClient client = new SendRecordingClient(HttpClient.newHttpClient());
+        ProductServiceImpl upstream = new ProductServiceImpl(URI.create(wireMock.getHttpBaseUrl()), Duration.ofSeconds(5), client);
+        HedgingProductService service = new HedgingProductService(upstream, 95, Duration.ofMillis(100), Duration.ofSeconds(5));
+
+        assertEquals("Corn Flakes", service.getBy("cornflakes").orElseThrow().title());
+
+        // The loser is cancelled once the answer's dependents have run, which getBy need not wait for.
+        for (int i = 0; i < 100 && !client.sends.get(0).isCancelled(); i++) Thread.sleep(10);
+
+        assertEquals(2, client.sends.size());
+        assertTrue(client.sends.get(0).isCancelled());
+        assertFalse(client.sends.get(1).isCompletedExceptionally());
+    }
+
+    @Test
+    @DisplayName("a request that fails is hedged at once")
+    void failedRequestIsHedged(WireMockRuntimeInfo wireMock) {
+        stubFirstThenFast(aResponse().withStatus(503));
+        HedgingProductService service = serviceFor(wireMock, Duration.ofSeconds(2));
+
+        long start = System.nanoTime();
+        Optional<Product> result = service.getBy("cornflakes");
+
+        assertEquals("Corn Flakes", result.orElseThrow().title());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(2)) < 0);
+        assertEquals(1, service.hedgeCount());
+    }
+
+    @Test
+    @DisplayName("a product the catalog does not have is not found, without a hedge")
+    void notFoundIsAnAnswer(WireMockRuntimeInfo wireMock) {
+        stubFor(get(urlEqualTo("/unknown.json")).willReturn(aResponse().withStatus(404)));
+        HedgingProductService service = serviceFor(wireMock, Duration.ofSeconds(2));
+
+        assertEquals(Optional.empty(), service.fetch("unknown", Duration.ofSeconds(1)).join());
+        assertEquals(0, service.hedgeCount());
+    }
+
+    @Test
+    @DisplayName("a lookup gives up at the caller's deadline")
+    void deadlineIsPropagated(WireMockRuntimeInfo wireMock) {
+        stubFor(get(urlEqualTo("/cornflakes.json"))
+                .willReturn(aResponse().withStatus(200).withFixedDelay(3000).withBody(CORN_FLAKES)));
+        HedgingProductService service = serviceFor(wireMock, Duration.ofMillis(50));
+
+        long start = System.nanoTime();
+        CompletionException result = assertThrows(CompletionException.class,
+                () -> service.fetch("cornflakes", Duration.ofMillis(300)).join());
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertInstanceOf(ProductUnavailableException.class, result.getCause());
+        assertTrue(elapsed.compareTo(Duration.ofMillis(2000)) < 0, "took " + elapsed);
+        assertTrue(service.getBy("cornflakes", Duration.ofMillis(100)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("the hedge delay follows the percentile of recent latencies")
+    void hedgeDelayAdapts() {
+        CatalogClient instant = (productName, timeout) -> CompletableFuture.completedFuture(Optional.empty());
+        HedgingProductService service = new HedgingProductService(instant, 95, Duration.ofSeconds(1), Duration.ofSeconds(1));
+
+        for (int i = 0; i < HedgingProductService.WINDOW - 1; i++) service.getBy("cornflakes");
+        assertEquals(Duration.ofSeconds(1), service.hedgeDelay());
+
+        service.getBy("cornflakes");
+        assertTrue(service.hedgeDelay().compareTo(Duration.ofMillis(10)) < 0);
+        assertEquals(0, service.hedgeCount());
+    }
+
+    @Test
+    @DisplayName("an answered lookup cancels its hedge and deadline timers")
+    void answeredLookupCancelsTimers() {
+        List<CompletableFuture<Optional<Product>>> pending = new ArrayList<>();
+        CatalogClient held = (productName, timeout) -> {
+            CompletableFuture<Optional<Product>> request = new CompletableFuture<>();
+            pending.add(request);
+            return request;
+        };
+        HedgingProductService service = new HedgingProductService(held, 95, Duration.ofHours(1), Duration.ofHours(1));
+
+        CompletableFuture<Optional<Product>> result = service.fetch("cornflakes", Duration.ofHours(1));
+        assertEquals(2, HedgingProductService.TIMERS.getQueue().size());
+
+        pending.get(0).complete(Optional.empty());
+
+        assertEquals(Optional.empty(), result.join());
+        assertEquals(0, HedgingProductService.TIMERS.getQueue().size());
+    }
+
+    @Test
+    void constructionFailsOnInvalidPercentile() {
+        CatalogClient instant = (productName, timeout) -> CompletableFuture.completedFuture(Optional.empty());
+
+        assertThrows(IllegalArgumentException.class, () -> new HedgingProductService(instant, 100, Duration.ZERO, Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class, () -> new HedgingProductService(instant, 95, Duration.ZERO, Duration.ZERO));
+        assertThrows(NullPointerException.class, () -> new HedgingProductService(null, 95, Duration.ZERO, Duration.ofSeconds(1)));
+    }
+
+    /**
+     * Sends through the given client, keeping the future of every asynchronous send.
+     * The futures are plain ones, so unlike the JDK client's, cancelling a stage
+     * depending on one does not abort the send.
+     */
+    private static final class SendRecordingClient extends HttpClient {
+        SendRecordingClient(HttpClient client) {
+            this.client = client;
+        }
+
+        private final HttpClient client;
+        final List<CompletableFuture<?>> sends = new CopyOnWriteArrayList<>();
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+            CompletableFuture<HttpResponse<T>> exchange = client.sendAsync(request, handler);
+            CompletableFuture<HttpResponse<T>> send = new CompletableFuture<>();
+            exchange.whenComplete((response, e) -> {
+                if (e == null) send.complete(response);
+                else send.completeExceptionally(e);
+            });
+            send.whenComplete((response, e) -> {
+                if (send.isCancelled()) exchange.cancel(true);
+            });
+
+            sends.add(send);
+            return send;
+        }
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler, HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+            return sendAsync(request, handler);
+        }
+
+        @Override
+        public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException, InterruptedException {
+            return client.send(request, handler);
+        }
+
+        @Override
+        public Optional<CookieHandler> cookieHandler() {
+            return client.cookieHandler();
+        }
+
+        @Override
+        public Optional<Duration> connectTimeout() {
+            return client.connectTimeout();
+        }
+
+        @Override
+        public Redirect followRedirects() {
+            return client.followRedirects();
+        }
+
+        @Override
+        public Optional<ProxySelector> proxy() {
+            return client.proxy();
+        }
+
+        @Override
+        public SSLContext sslContext() {
+            return client.sslContext();
+        }
+
+        @Override
+        public SSLParameters sslParameters() {
+            return client.sslParameters();
+        }
+
+        @Override
+        public Optional<Authenticator> authenticator() {
+            return client.authenticator();
+        }
+
+        @Override
+        public Version version() {
+            return client.version();
+        }
+
+        @Override
+        public Optional<Executor> executor() {
+            return client.executor();
+        }
+    }
+}
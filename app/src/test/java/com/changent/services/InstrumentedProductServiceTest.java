@@ -0,0 +1,119 @@
+package com.changent.services;
+
+import com.changent.entities.Product;
+import com.changent.metrics.MetricsRegistry;
+import com.changent.metrics.MetricsSnapshot;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(WireMockExtension.class)
+class InstrumentedProductServiceTest {
+
+    @Test
+    @DisplayName("times lookups by whether the product was found")
+    void timesLookupsByOutcome() {
+        MetricsRegistry registry = new MetricsRegistry();
+        ProductService service = new InstrumentedProductService(new ProductServiceMockImpl(), registry);
+
+        assertTrue(service.getBy("cheerios").isPresent());
+        assertTrue(service.getBy("unknown").isEmpty());
+        assertTrue(service.getByAsync("weetabix").join().isPresent());
+
+        MetricsSnapshot result = registry.snapshot();
+        assertEquals(2, result.histogram(InstrumentedProductService.FOUND_NANOS).count());
+        assertEquals(1, result.histogram(InstrumentedProductService.NOT_FOUND_NANOS).count());
+        assertEquals(0, result.histogram(InstrumentedProductService.ERROR_NANOS).count());
+    }
+
+    @Test
+    @DisplayName("times failed lookups as errors and passes the failure on")
+    void timesErrors() {
+        MetricsRegistry registry = new MetricsRegistry();
+        ProductService failing = new ProductService() {
+            @Override
+            public Optional<Product> getBy(String title) {
+                throw new IllegalStateException("Catalog is down.");
+            }
+
+            @Override
+            public CompletableFuture<Optional<Product>> getByAsync(String title) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Catalog is down."));
+            }
+        };
+        ProductService service = new InstrumentedProductService(failing, registry);
+
+        assertThrows(IllegalStateException.class, () -> service.getBy("cheerios"));
+        assertThrows(CompletionException.class, () -> service.getByAsync("cheerios").join());
+
+        assertEquals(2, registry.snapshot().histogram(InstrumentedProductService.ERROR_NANOS).count());
+    }
+
+    @Test
+    @DisplayName("times fetches from a catalog client, counting unavailable products as errors")
+    void timesCatalogFetches() {
+        MetricsRegistry registry = new MetricsRegistry();
+        CircuitBreakerProductService breaker = new CircuitBreakerProductService(
+                (productName, timeout) -> CompletableFuture.failedFuture(new ProductUnavailableException("Catalog is down.")),
+                4, 1, Duration.ofMinutes(1), Duration.ofSeconds(1));
+        InstrumentedProductService service = new InstrumentedProductService(breaker, registry);
+
+        CompletionException thrown = assertThrows(CompletionException.class,
+                () -> service.fetch("cheerios", Duration.ofSeconds(1)).join());
+        assertInstanceOf(ProductUnavailableException.class, thrown.getCause());
+
+        MetricsSnapshot result = registry.snapshot();
+        assertEquals(1, result.histogram(InstrumentedProductService.ERROR_NANOS).count());
+        assertEquals(0, result.histogram(InstrumentedProductService.NOT_FOUND_NANOS).count());
+    }
+
+    @Test
+    @DisplayName("fetches through getByAsync when the delegate is not a catalog client")
+    void fetchesFromPlainService() {
+        MetricsRegistry registry = new MetricsRegistry();
+        InstrumentedProductService service = new InstrumentedProductService(new ProductServiceMockImpl(), registry);
+
+        assertTrue(service.fetch("cheerios", Duration.ofSeconds(1)).join().isPresent());
+        assertTrue(service.fetch("unknown", Duration.ofSeconds(1)).join().isEmpty());
+
+        MetricsSnapshot result = registry.snapshot();
+        assertEquals(1, result.histogram(InstrumentedProductService.FOUND_NANOS).count());
+        assertEquals(1, result.histogram(InstrumentedProductService.NOT_FOUND_NANOS).count());
+    }
+
+    @Test
+    @DisplayName("times lookups the catalog failed as errors, though they return empty")
+    void timesCatalogFailuresAsErrors(WireMockRuntimeInfo wireMock) {
+        stubFor(get(urlEqualTo("/cheerios.json")).willReturn(aResponse().withStatus(500)));
+        stubFor(get(urlEqualTo("/unknown.json")).willReturn(aResponse().withStatus(404)));
+        MetricsRegistry registry = new MetricsRegistry();
+        ProductServiceImpl catalog = new ProductServiceImpl(URI.create(wireMock.getHttpBaseUrl()), Duration.ofSeconds(5));
+        ProductService service = new InstrumentedProductService(catalog, registry);
+
+        assertTrue(service.getBy("cheerios").isEmpty());
+        assertTrue(service.getByAsync("cheerios").join().isEmpty());
+        assertTrue(service.getBy("unknown").isEmpty());
+
+        MetricsSnapshot result = registry.snapshot();
+        assertEquals(2, result.histogram(InstrumentedProductService.ERROR_NANOS).count());
+        assertEquals(1, result.histogram(InstrumentedProductService.NOT_FOUND_NANOS).count());
+    }
+
+    @Test
+    void constructionFailsWhenInvalid() {
+        assertThrows(NullPointerException.class, () -> new InstrumentedProductService(null, new MetricsRegistry()));
+        assertThrows(IllegalArgumentException.class,
+                () -> new InstrumentedProductService(new ProductServiceMockImpl(), new MetricsRegistry(), Duration.ZERO));
+    }
+}
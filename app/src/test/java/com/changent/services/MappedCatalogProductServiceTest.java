@@ -0,0 +1,104 @@
+package com.changent.services;
+
+import com.changent.entities.Product;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedCatalogProductServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("builds a catalog from a directory of product JSON files")
+    void buildFromJsonDirectory() throws IOException {
+        Path catalogFile = tempDir.resolve("catalog.bin");
+
+        MappedCatalogBuilder.fromJsonDirectory(Path.of("src/test/test-data"), catalogFile);
+        MappedCatalogProductService service = MappedCatalogProductService.open(catalogFile);
+
+        assertEquals(1, service.size());
+        assertEquals(Optional.of(new Product("Cheerios", 8.43)), service.getBy("cheerios"));
+        assertEquals(Optional.empty(), service.getBy("Cheerios"));
+    }
+
+    @Test
+    @DisplayName("resolves the same products as the mock catalog")
+    void matchesMockCatalog() throws IOException {
+        ProductServiceMockImpl mock = new ProductServiceMockImpl();
+        Path catalogFile = tempDir.resolve("catalog.bin");
+
+        MappedCatalogBuilder.write(mock.productMap, catalogFile);
+        MappedCatalogProductService service = MappedCatalogProductService.open(catalogFile);
+
+        for (String name : mock.productMap.keySet()) {
+            assertEquals(mock.getBy(name), service.getBy(name));
+        }
+        assertEquals(Optional.empty(), service.getBy("invalid-product-title"));
+    }
+
+    @Test
+    @DisplayName("resolves every product of a large catalog")
+    void resolvesLargeCatalog() throws IOException {
+        final int givenProducts = 50_000;
+        Map<String, Product> products = new HashMap<>();
+        for (int i = 0; i < givenProducts; i++) {
+            products.put("sku-" + i, new Product("Product " + i, i / 100.0));
+        }
+        Path catalogFile = tempDir.resolve("catalog.bin");
+
+        MappedCatalogBuilder.write(products, catalogFile);
+        MappedCatalogProductService service = MappedCatalogProductService.open(catalogFile);
+
+        assertEquals(givenProducts, service.size());
+        for (int i = 0; i < givenProducts; i++) {
+            assertEquals(products.get("sku-" + i), service.getBy("sku-" + i).get());
+        }
+        assertTrue(service.getBy("sku-" + givenProducts).isEmpty());
+    }
+
+    @Test
+    @DisplayName("an empty catalog resolves nothing")
+    void emptyCatalog() throws IOException {
+        Path catalogFile = tempDir.resolve("catalog.bin");
+
+        MappedCatalogBuilder.write(Map.of(), catalogFile);
+
+        assertTrue(MappedCatalogProductService.open(catalogFile).getBy("cheerios").isEmpty());
+    }
+
+    @Test
+    @DisplayName("the fingerprint changes with titles and prices, not just ids")
+    void fingerprintCoversRecords() throws IOException {
+        Path original = tempDir.resolve("original.bin");
+        Path repriced = tempDir.resolve("repriced.bin");
+        Path retitled = tempDir.resolve("retitled.bin");
+
+        MappedCatalogBuilder.write(Map.of("cheerios", new Product("Cheerios", 8.43)), original);
+        MappedCatalogBuilder.write(Map.of("cheerios", new Product("Cheerios", 8.44)), repriced);
+        MappedCatalogBuilder.write(Map.of("cheerios", new Product("Cheeriop", 8.43)), retitled);
+        long fingerprint = MappedCatalogProductService.open(original).fingerprint();
+
+        assertEquals(fingerprint, MappedCatalogProductService.open(original).fingerprint());
+        assertNotEquals(fingerprint, MappedCatalogProductService.open(repriced).fingerprint());
+        assertNotEquals(fingerprint, MappedCatalogProductService.open(retitled).fingerprint());
+    }
+
+    @Test
+    @DisplayName("opening a file that is not a catalog fails")
+    void openFailsOnInvalidFile() throws IOException {
+        Path notACatalog = Files.writeString(tempDir.resolve("cheerios.json"), "{\"title\": \"Cheerios\",\"price\": 8.43}");
+
+        assertThrows(IOException.class, () -> MappedCatalogProductService.open(notACatalog));
+    }
+}
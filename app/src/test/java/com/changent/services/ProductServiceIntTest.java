@@ -2,11 +2,15 @@ package com.changent.services;
 
 import com.changent.entities.Product;
 import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import java.net.URI;
+import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -14,9 +18,13 @@ import static org.junit.jupiter.api.Assertions.*;
 @ExtendWith(WireMockExtension.class)
 class ProductServiceIntTest {
 
+    private static ProductService serviceFor(WireMockRuntimeInfo wireMock) {
+        return new ProductServiceImpl(URI.create(wireMock.getHttpBaseUrl()), Duration.ofSeconds(2));
+    }
+
     @Test
     @DisplayName("a successful endpoint call returns a Product")
-    public void testGetByIsSuccessful() {
+    public void testGetByIsSuccessful(WireMockRuntimeInfo wireMock) {
         String json = "{\n" +
                 "  \"title\": \"Corn Flakes\",\n" +
                 "  \"price\": 2.52\n" +
@@ -28,27 +36,109 @@ class ProductServiceIntTest {
                         .withHeader("Content-Type", "application/json")
                         .withBody(json)));
 
-        ProductService service = new ProductServiceImpl();
+        ProductService service = serviceFor(wireMock);
         Optional<Product> result = service.getBy("cornflakes");
 
         assertTrue(result.isPresent());
         assertEquals("Corn Flakes", result.get().title());
         assertEquals(2.52, result.get().unitPrice());
-        // TODO(wltiii): validate number of calls!
+        verify(1, getRequestedFor(urlEqualTo("/cornflakes.json")));
     }
 
     @Test
     @DisplayName("a failing endpoint call returns an Optional")
-    public void testGetByFails() {
+    public void testGetByFails(WireMockRuntimeInfo wireMock) {
         stubFor(get(urlEqualTo("/failure.json"))
                 .willReturn(aResponse()
                         .withStatus(404)));
 
-        ProductService service = new ProductServiceImpl();
+        ProductService service = serviceFor(wireMock);
         Optional<Product> result = service.getBy("failure");
 
         assertFalse(result.isPresent());
         assertTrue(result.isEmpty());
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("an endpoint call slower than the request timeout returns an empty Optional")
+    public void testGetByTimesOut(WireMockRuntimeInfo wireMock) {
+        stubFor(get(urlEqualTo("/cornflakes.json"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(1000)
+                        .withBody("{\"title\": \"Corn Flakes\", \"price\": 2.52}")));
+
+        ProductService service = new ProductServiceImpl(URI.create(wireMock.getHttpBaseUrl()), Duration.ofMillis(100));
+
+        assertTrue(service.getBy("cornflakes").isEmpty());
+    }
+
+    @Test
+    @DisplayName("an asynchronous endpoint call returns a Product")
+    public void testGetByAsyncIsSuccessful(WireMockRuntimeInfo wireMock) {
+        stubFor(get(urlEqualTo("/weetabix.json"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBody("{\"title\": \"Weetabix\", \"price\": 9.98}")));
+
+        ProductService service = serviceFor(wireMock);
+
+        assertEquals(new Product("Weetabix", 9.98), service.getByAsync("weetabix").join().get());
+        assertTrue(service.getByAsync("missing").join().isEmpty());
+    }
+
+    @Test
+    @DisplayName("fetching tells a product the catalog does not have from a failing catalog")
+    public void testFetchDistinguishesNotFoundFromFailure(WireMockRuntimeInfo wireMock) {
+        stubFor(get(urlEqualTo("/missing.json")).willReturn(aResponse().withStatus(404)));
+        stubFor(get(urlEqualTo("/broken.json")).willReturn(aResponse().withStatus(503)));
+        stubFor(get(urlEqualTo("/garbled.json")).willReturn(aResponse().withStatus(200).withBody("{\"title\":")));
+
+        ProductServiceImpl service = new ProductServiceImpl(URI.create(wireMock.getHttpBaseUrl()), Duration.ofSeconds(2));
+
+        assertTrue(service.fetch("missing", Duration.ofSeconds(1)).join().isEmpty());
+        CompletionException broken = assertThrows(CompletionException.class, () -> service.fetch("broken", Duration.ofSeconds(1)).join());
+        assertInstanceOf(ProductUnavailableException.class, broken.getCause());
+        CompletionException garbled = assertThrows(CompletionException.class, () -> service.fetch("garbled", Duration.ofSeconds(1)).join());
+        assertInstanceOf(ProductUnavailableException.class, garbled.getCause());
+        assertTrue(service.getByAsync("broken").join().isEmpty());
+    }
+
+    @Test
+    @DisplayName("fetching gives up after the caller's timeout")
+    public void testFetchTimesOut(WireMockRuntimeInfo wireMock) {
+        stubFor(get(urlEqualTo("/cornflakes.json"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(1000)
+                        .withBody("{\"title\": \"Corn Flakes\", \"price\": 2.52}")));
+
+        ProductServiceImpl service = new ProductServiceImpl(URI.create(wireMock.getHttpBaseUrl()), Duration.ofSeconds(5));
+
+        CompletionException result = assertThrows(CompletionException.class,
+                () -> service.fetch("cornflakes", Duration.ofMillis(100)).join());
+        assertInstanceOf(ProductUnavailableException.class, result.getCause());
+    }
+
+    @Test
+    @DisplayName("a blocking lookup throws when the catalog fails, and finds nothing when it has no such product")
+    public void testLookUpDistinguishesNotFoundFromFailure(WireMockRuntimeInfo wireMock) {
+        stubFor(get(urlEqualTo("/missing.json")).willReturn(aResponse().withStatus(404)));
+        stubFor(get(urlEqualTo("/broken.json")).willReturn(aResponse().withStatus(500)));
+
+        ProductServiceImpl service = new ProductServiceImpl(URI.create(wireMock.getHttpBaseUrl()), Duration.ofSeconds(2));
+
+        assertTrue(service.lookUp("missing").isEmpty());
+        assertTrue(service.lookUp("not a url").isEmpty());
+        assertThrows(ProductUnavailableException.class, () -> service.lookUp("broken"));
+        assertTrue(service.getBy("broken").isEmpty());
+    }
+
+    @Test
+    void constructionFailsWhenTimeoutIsInvalid() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ProductServiceImpl(ProductServiceImpl.DEFAULT_BASE_URL, Duration.ZERO));
+        assertThrows(NullPointerException.class,
+                () -> new ProductServiceImpl(null, Duration.ofSeconds(1)));
+    }
+}
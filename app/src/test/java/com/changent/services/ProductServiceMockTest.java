@@ -17,4 +17,13 @@ class ProductServiceMockTest {
         assertEquals(expected, service.getBy("cornflakes").get());
         assertEquals(Optional.empty(), service.getBy("invalid-product-title"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getByAsyncOnMockImplementation() {
+        ProductService service = new ProductServiceMockImpl();
+        Product expected = new Product("Corn Flakes", Double.valueOf("2.52"));
+
+        assertEquals(expected, service.getByAsync("cornflakes").join().get());
+        assertEquals(Optional.empty(), service.getByAsync("invalid-product-title").join());
+    }
+}
@@ -0,0 +1,107 @@
+package com.changent.services;
+
+import com.changent.entities.Cart;
+import com.changent.entities.Product;
+import com.changent.valueobjects.Money;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepricingEngineTest {
+
+    private static Cart cartWith(String productName, int quantity) {
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        cart.addProduct(productName, quantity);
+        return cart;
+    }
+
+    @Test
+    @DisplayName("reprices the carts holding a changed product, and only those")
+    void repricesAffectedCarts() {
+        RepricingEngine engine = new RepricingEngine();
+        Cart cheerios = cartWith("cheerios", 2);
+        Cart weetabix = cartWith("weetabix", 1);
+        engine.track(cheerios);
+        engine.track(weetabix);
+
+        RepricingReport report = engine.reprice(List.of(new Product("Cheerios", Money.of(9.00))));
+
+        assertEquals(1, report.productCount());
+        assertEquals(1, report.cartsExamined());
+        assertEquals(1, report.cartsRepriced());
+        assertEquals(1, report.linesRepriced());
+        assertEquals(new BigDecimal("18.00"), cheerios.getSubtotal().get());
+        assertEquals(new BigDecimal("20.25"), cheerios.getTotalPayable().get());
+        assertEquals(new BigDecimal("9.98"), weetabix.getSubtotal().get());
+    }
+
+    @Test
+    @DisplayName("finds lines added after the cart was tracked")
+    void indexesNewLines() {
+        RepricingEngine engine = new RepricingEngine();
+        Cart cart = cartWith("cheerios", 1);
+        engine.track(cart);
+        cart.addProduct("frosties", 3);
+
+        RepricingReport report = engine.reprice(List.of(new Product("Frosties", Money.of(1.00))));
+
+        assertEquals(1, report.cartsRepriced());
+        assertEquals(new BigDecimal("11.43"), cart.getSubtotal().get());
+    }
+
+    @Test
+    @DisplayName("untracked carts are left alone")
+    void untrack() {
+        RepricingEngine engine = new RepricingEngine();
+        Cart cart = cartWith("cheerios", 1);
+        engine.track(cart);
+        engine.untrack(cart);
+        cart.addProduct("cheerios", 1);
+
+        RepricingReport report = engine.reprice(List.of(new Product("Cheerios", Money.of(1.00))));
+
+        assertEquals(0, report.cartsExamined());
+        assertEquals(0, engine.trackedCount());
+        assertEquals(new BigDecimal("16.86"), cart.getSubtotal().get());
+    }
+
+    @Test
+    @DisplayName("an unchanged price reprices nothing")
+    void unchangedPrice() {
+        RepricingEngine engine = new RepricingEngine();
+        engine.track(cartWith("cheerios", 1));
+
+        RepricingReport report = engine.reprice(List.of(new Product("Cheerios", 8.43)));
+
+        assertEquals(1, report.cartsExamined());
+        assertEquals(0, report.cartsRepriced());
+    }
+
+    @Test
+    @DisplayName("reprices many carts in parallel and reports throughput")
+    void repricesManyCarts() {
+        final int givenCarts = 50_000;
+        RepricingEngine engine = new RepricingEngine(new ForkJoinPool(4));
+        List<Cart> carts = new ArrayList<>();
+        for (int i = 0; i < givenCarts; i++) {
+            Cart cart = cartWith(i % 2 == 0 ? "cornflakes" : "shreddies", 1 + i % 3);
+            carts.add(cart);
+            engine.track(cart);
+        }
+
+        RepricingReport report = engine.reprice(List.of(new Product("Corn Flakes", Money.of(3.00)), new Product("Shreddies", Money.of(5.00))));
+
+        assertEquals(givenCarts, report.cartsRepriced());
+        assertTrue(report.cartsPerSecond() > 0);
+        for (int i = 0; i < givenCarts; i++) {
+            long expectedCents = (i % 2 == 0 ? 300 : 500) * (1 + i % 3);
+            assertEquals(BigDecimal.valueOf(expectedCents, 2), carts.get(i).getSubtotal().get());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.changent.services;
+
+import com.changent.entities.Product;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(WireMockExtension.class)
+class TracingProductServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<RecordedEvent> recordedFetches(Runnable work) throws IOException {
+        Path file = tempDir.resolve("recording.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("com.changent.CatalogFetch");
+            recording.start();
+            work.run();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("com.changent.CatalogFetch"))
+                .sorted(Comparator.comparing(RecordedEvent::getStartTime))
+                .toList();
+    }
+
+    @Test
+    @DisplayName("records each lookup with its outcome")
+    void recordsFetches() throws IOException {
+        ProductService service = new TracingProductService(new ProductServiceMockImpl());
+
+        List<RecordedEvent> result = recordedFetches(() -> {
+            service.getBy("cheerios");
+            service.getBy("unknown");
+            service.getByAsync("weetabix").join();
+        });
+
+        assertEquals(3, result.size());
+        assertEquals("found", result.get(0).getString("outcome"));
+        assertEquals("cheerios", result.get(0).getString("productName"));
+        assertEquals("notFound", result.get(1).getString("outcome"));
+        assertTrue(result.get(2).getBoolean("asynchronous"));
+    }
+
+    @Test
+    @DisplayName("records a failed lookup as an error and passes the failure on")
+    void recordsErrors() throws IOException {
+        ProductService service = new TracingProductService(new ProductService() {
+            @Override
+            public Optional<Product> getBy(String title) {
+                throw new IllegalStateException("Catalog is down.");
+            }
+        });
+
+        List<RecordedEvent> result = recordedFetches(() ->
+                assertThrows(IllegalStateException.class, () -> service.getBy("cheerios")));
+
+        assertEquals(1, result.size());
+        assertEquals("error", result.get(0).getString("outcome"));
+    }
+
+    @Test
+    @DisplayName("records a lookup the catalog failed as an error, though it returns empty")
+    void recordsCatalogFailures(WireMockRuntimeInfo wireMock) throws IOException {
+        stubFor(get(urlEqualTo("/cheerios.json")).willReturn(aResponse().withStatus(500)));
+        ProductServiceImpl catalog = new ProductServiceImpl(URI.create(wireMock.getHttpBaseUrl()), Duration.ofSeconds(5));
+        ProductService service = new TracingProductService(catalog);
+
+        List<RecordedEvent> result = recordedFetches(() -> {
+            assertTrue(service.getBy("cheerios").isEmpty());
+            assertTrue(service.getByAsync("cheerios").join().isEmpty());
+        });
+
+        assertEquals(2, result.size());
+        assertEquals("error", result.get(0).getString("outcome"));
+        assertEquals("error", result.get(1).getString("outcome"));
+    }
+
+    @Test
+    @DisplayName("looks up as the delegate does with no recording running")
+    void passesThroughWhenNotRecording() {
+        ProductService service = new TracingProductService(new ProductServiceMockImpl());
+
+        assertEquals(Optional.of(8.43), service.getBy("cheerios").map(Product::unitPrice));
+    }
+
+    @Test
+    void constructionFailsWhenInvalid() {
+        assertThrows(NullPointerException.class, () -> new TracingProductService(null));
+        assertThrows(IllegalArgumentException.class, () -> new TracingProductService(new ProductServiceMockImpl(), Duration.ZERO));
+    }
+}
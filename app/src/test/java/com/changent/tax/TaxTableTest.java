@@ -0,0 +1,87 @@
+package com.changent.tax;
+
+import com.changent.entities.Cart;
+import com.changent.entities.TaxCalculator;
+import com.changent.entities.TaxRounding;
+import com.changent.services.ProductServiceMockImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaxTableTest {
+
+    private static final Path GIVEN_RULES = Path.of("src/test/test-data/tax-rules.csv");
+
+    @Test
+    @DisplayName("resolves each region and category to its most specific rule")
+    void mostSpecificRule() throws IOException {
+        TaxTable table = TaxTable.load(GIVEN_RULES);
+
+        assertEquals(0, table.rateInMillionths("US-CA", "Cheerios"));
+        assertEquals(82_500, table.rateInMillionths("US-CA", "Weetabix"));
+        assertEquals(200_000, table.rateInMillionths("UK", "Weetabix"));
+        assertEquals(200_000, table.rateInMillionths("UK", "Corn Flakes"));
+        assertEquals(50_000, table.rateInMillionths("FR", "Corn Flakes"));
+        assertEquals(125_000, table.rateInMillionths("FR", "Frosties"));
+        assertEquals(TaxRounding.PER_LINE, table.rounding());
+    }
+
+    @Test
+    @DisplayName("carts are taxed at the rates of their region")
+    void taxesCarts() throws IOException {
+        TaxCalculator california = TaxTable.load(GIVEN_RULES).forRegion("US-CA");
+        Cart cart = new Cart(new ProductServiceMockImpl(), california);
+        cart.addProduct("cheerios", 2);
+        cart.addProduct("weetabix", 1);
+
+        // only the weetabix is taxed: 9.98 * 0.0825 = 0.82335
+        assertEquals(new BigDecimal("0.82"), cart.getTaxPayable().get());
+        assertEquals(new BigDecimal("27.66"), cart.getTotalPayable().get());
+        assertEquals(cart.getTaxPayable(), cart.quote().tax());
+    }
+
+    @Test
+    @DisplayName("per line rounding rounds each line, per invoice rounding the sum")
+    void roundingModes() {
+        List<String> givenRates = List.of("rate,*,*,0.1", "category,other,Weetabix");
+        TaxCalculator perLine = TaxTable.compile(concat("rounding,PER_LINE", givenRates)).forRegion("*");
+        TaxCalculator perInvoice = TaxTable.compile(concat("rounding,PER_INVOICE", givenRates)).forRegion("*");
+
+        // three lines of 0.05 are taxed 0.005 each
+        String[] titles = {"Cheerios", "Weetabix", "Frosties"};
+        long[] lineCents = {5, 5, 5};
+
+        assertEquals(0, perLine.taxInCents(titles, lineCents, 3));
+        assertEquals(2, perInvoice.taxInCents(titles, lineCents, 3));
+        assertEquals(0, perInvoice.taxInCents(titles, lineCents, 1));
+    }
+
+    @Test
+    @DisplayName("without rules nothing is taxed")
+    void noRules() {
+        TaxTable table = TaxTable.compile(List.of());
+
+        assertEquals(0, table.rateInMillionths("UK", "Cheerios"));
+        assertEquals(TaxRounding.PER_INVOICE, table.rounding());
+    }
+
+    @Test
+    @DisplayName("invalid rules are rejected with their line number")
+    void invalidRules() {
+        for (String givenRule : List.of("rate,UK,*", "rate,UK,*,abc", "rate,UK,*,-0.1", "rate,UK,*,0.0000001", "rounding,SOMETIMES", "discount,UK,0.1", "category,food")) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> TaxTable.compile(List.of("# rules", givenRule)), givenRule);
+            assertTrue(e.getMessage().contains("line 2"), e.getMessage());
+        }
+    }
+
+    private static List<String> concat(String rule, List<String> rules) {
+        return java.util.stream.Stream.concat(java.util.stream.Stream.of(rule), rules.stream()).toList();
+    }
+}
@@ -0,0 +1,115 @@
+package com.changent.tracing;
+
+import com.changent.entities.Cart;
+import com.changent.entities.Product;
+import com.changent.services.ProductServiceMockImpl;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CartTracingTest {
+
+    @TempDir
+    Path tempDir;
+
+    private int productsOneIn;
+    private int mutationsOneIn;
+
+    @BeforeEach
+    void traceEverything() {
+        productsOneIn = Tracing.PRODUCTS.oneIn();
+        mutationsOneIn = Tracing.CART_MUTATIONS.oneIn();
+        Tracing.PRODUCTS.setOneIn(1);
+        Tracing.CART_MUTATIONS.setOneIn(1);
+    }
+
+    @AfterEach
+    void restoreRates() {
+        Tracing.PRODUCTS.setOneIn(productsOneIn);
+        Tracing.CART_MUTATIONS.setOneIn(mutationsOneIn);
+    }
+
+    private List<RecordedEvent> recorded(String eventName, Runnable work) throws IOException {
+        Path file = tempDir.resolve("recording.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable(eventName);
+            recording.start();
+            work.run();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals(eventName))
+                .toList();
+    }
+
+    @Test
+    @DisplayName("records each mutation of a traced cart")
+    void recordsMutations() throws IOException {
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        cart.addListener(CartTracing.INSTANCE);
+
+        List<RecordedEvent> result = recorded("com.changent.CartMutation", () -> {
+            cart.addProduct("cheerios", 2);
+            cart.removeProduct("cheerios", 1);
+        });
+
+        assertEquals(2, result.size());
+        assertEquals("added", result.get(0).getString("kind"));
+        assertEquals("cheerios", result.get(0).getString("productName"));
+        assertEquals(2, result.get(0).getInt("lineQuantity"));
+        assertEquals(843, result.get(0).getLong("linePriceInCents"));
+        assertEquals("removed", result.get(1).getString("kind"));
+        assertEquals(1, result.get(1).getInt("quantity"));
+    }
+
+    @Test
+    @DisplayName("records quotes as they are priced")
+    void recordsQuotes() throws IOException {
+        Cart cart = new Cart(new ProductServiceMockImpl());
+        cart.addListener(CartTracing.INSTANCE);
+        cart.addProduct("cheerios", 2);
+
+        List<RecordedEvent> result = recorded("com.changent.CartQuote", () -> {
+            cart.quote();
+            cart.quote();
+        });
+
+        assertEquals(1, result.size());
+        assertEquals(2, result.get(0).getInt("itemCount"));
+        assertEquals(1897, result.get(0).getLong("totalInCents"));
+    }
+
+    @Test
+    @DisplayName("records products as they are created")
+    void recordsProducts() throws IOException {
+        List<RecordedEvent> result = recorded("com.changent.ProductCreated", () -> new Product("Porridge", 3.10));
+
+        assertEquals(1, result.size());
+        assertEquals("Porridge", result.get(0).getString("title"));
+        assertEquals(310, result.get(0).getLong("priceInCents"));
+    }
+
+    @Test
+    @DisplayName("records nothing the sampler leaves out")
+    void honoursSampling() throws IOException {
+        Tracing.PRODUCTS.setOneIn(0);
+
+        List<RecordedEvent> result = recorded("com.changent.ProductCreated", () -> new Product("Porridge", 3.10));
+
+        assertTrue(result.isEmpty());
+    }
+}
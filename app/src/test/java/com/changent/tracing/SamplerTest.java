@@ -0,0 +1,46 @@
+package com.changent.tracing;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SamplerTest {
+
+    private static int sampledOf(Sampler sampler, int occurrences) {
+        int sampled = 0;
+        for (int i = 0; i < occurrences; i++) if (sampler.sample()) sampled++;
+        return sampled;
+    }
+
+    @Test
+    @DisplayName("a rate of one samples everything and zero nothing")
+    void allOrNothing() {
+        assertEquals(1_000, sampledOf(new Sampler(1), 1_000));
+        assertEquals(0, sampledOf(new Sampler(0), 1_000));
+    }
+
+    @Test
+    @DisplayName("samples about one in the rate")
+    void samplesAtRate() {
+        int result = sampledOf(new Sampler(10), 100_000);
+
+        assertEquals(10_000, result, 1_000);
+    }
+
+    @Test
+    @DisplayName("the rate can be changed while sampling")
+    void setOneIn() {
+        Sampler sampler = new Sampler(0);
+
+        sampler.setOneIn(1);
+
+        assertEquals(1, sampler.oneIn());
+        assertTrue(sampler.sample());
+    }
+
+    @Test
+    void constructionFailsOnNegativeRate() {
+        assertThrows(IllegalArgumentException.class, () -> new Sampler(-1));
+    }
+}
@@ -0,0 +1,110 @@
+package com.changent.valueobjects;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @Test
+    @DisplayName("constructs from a double and verifies getters")
+    void constructFromDouble() {
+        Money result = Money.of(8.43);
+
+        assertEquals(843, result.cents());
+        assertEquals(8.43, result.doubleValue());
+        assertEquals("8.43", result.toString());
+    }
+
+    @Test
+    @DisplayName("constructs from a String")
+    void constructFromString() {
+        assertEquals(Money.ofCents(1502), Money.of("15.02"));
+        assertEquals(Money.ofCents(1500), Money.of("15"));
+    }
+
+    @Test
+    @DisplayName("fails construction when there are more than two decimals")
+    void constructionFailsOnFractionalCents() {
+        Exception thrown = assertThrows(IllegalArgumentException.class, () -> Money.of(1.333));
+
+        assertEquals("Number of decimals is 3. Money can only have two.", thrown.getMessage());
+    }
+
+    @Test
+    @DisplayName("fails construction when amount is null or not finite")
+    void constructionFailsOnInvalidAmount() {
+        assertThrows(IllegalArgumentException.class, () -> Money.of((String) null));
+        assertThrows(IllegalArgumentException.class, () -> Money.of(Double.NaN));
+    }
+
+    @Test
+    void arithmetic() {
+        Money cornflakes = Money.of(2.52);
+        Money weetabix = Money.of(9.98);
+
+        assertEquals(Money.of(15.02), cornflakes.times(2).plus(weetabix));
+        assertEquals(Money.of(7.46), weetabix.minus(cornflakes));
+    }
+
+    @Test
+    @DisplayName("fails rather than overflows")
+    void overflow() {
+        assertThrows(ArithmeticException.class, () -> Money.ofCents(Long.MAX_VALUE).plus(Money.ofCents(1)));
+        assertThrows(ArithmeticException.class, () -> Money.ofCents(Long.MAX_VALUE / 2).times(3));
+    }
+
+    @Test
+    @DisplayName("multiplies using bankers rounding as USDollar does")
+    void multiplyWithBankersRounding() {
+        assertEquals(Money.of(1.88), Money.of(15.02).multiplyUsingBankersRoundingBy(0.125));
+
+        for (long cents = -2000; cents <= 2000; cents++) {
+            for (double factor : new double[]{0.125, 0.2, 0.075, 1.5, 0.333333}) {
+                BigDecimal expected = BigDecimal.valueOf(cents, 2)
+                        .multiply(BigDecimal.valueOf(factor))
+                        .setScale(2, java.math.RoundingMode.HALF_EVEN);
+
+                assertEquals(expected.movePointRight(2).longValueExact(),
+                        Money.multiplyUsingBankersRounding(cents, Money.millionthsOf(factor)),
+                        cents + " x " + factor);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("multiplies amounts whose product in millionths would overflow")
+    void multiplyLargeAmounts() {
+        for (long cents : new long[]{24_691_356_000_000_000L, 123_456_789_012_345L, -98_765_432_109_876L}) {
+            long factor = Money.millionthsOf(0.125);
+            BigDecimal exact = BigDecimal.valueOf(cents).multiply(BigDecimal.valueOf(factor)).movePointLeft(6);
+
+            assertEquals(exact.setScale(0, java.math.RoundingMode.FLOOR).longValueExact(), Money.multiplyRoundingDown(cents, factor));
+            assertEquals(exact.setScale(0, java.math.RoundingMode.HALF_EVEN).longValueExact(), Money.multiplyUsingBankersRounding(cents, factor));
+        }
+    }
+
+    @Test
+    @DisplayName("rejects factors finer than a millionth")
+    void millionthsOf() {
+        assertEquals(125_000, Money.millionthsOf(0.125));
+        assertThrows(IllegalArgumentException.class, () -> Money.millionthsOf(0.0000001));
+    }
+
+    @Test
+    @DisplayName("converts to USDollar")
+    void toUSDollar() {
+        assertEquals(new USDollar("16.90"), Money.ofCents(1690).toUSDollar());
+    }
+
+    @Test
+    void testEqualsAndHashCode() {
+        assertEquals(Money.of(1.88), Money.ofCents(188));
+        assertEquals(Money.of(1.88).hashCode(), Money.ofCents(188).hashCode());
+        assertNotEquals(Money.of(1.88), Money.of(1.89));
+        assertTrue(Money.of(1.88).compareTo(Money.of(1.89)) < 0);
+    }
+}
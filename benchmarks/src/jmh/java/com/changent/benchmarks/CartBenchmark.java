@@ -0,0 +1,71 @@
+package com.changent.benchmarks;
+
+import com.changent.entities.Cart;
+import com.changent.entities.CartQuote;
+import com.changent.valueobjects.USDollar;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CartBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    int cartSize;
+
+    private Cart cart;
+    private String productInCart;
+    private String productNotInCart;
+
+    @Setup
+    public void fillCart() {
+        cart = new Cart(new InMemoryCatalog(cartSize + 1));
+
+        for (int i = 0; i < cartSize; i++) {
+            cart.addProduct(InMemoryCatalog.nameOf(i), 1 + i % 3);
+        }
+
+        productInCart = InMemoryCatalog.nameOf(cartSize / 2);
+        productNotInCart = InMemoryCatalog.nameOf(cartSize);
+    }
+
+    // Adds are paired with removes so the cart stays the same size across invocations.
+
+    @Benchmark
+    public Cart addAndRemoveExistingProduct() {
+        cart.addProduct(productInCart, 1);
+        cart.removeProduct(productInCart, 1);
+        return cart;
+    }
+
+    @Benchmark
+    public Cart addAndRemoveNewProduct() {
+        cart.addProduct(productNotInCart, 1);
+        cart.removeProduct(productNotInCart, 1);
+        return cart;
+    }
+
+    @Benchmark
+    public USDollar getSubtotal() {
+        return cart.getSubtotal();
+    }
+
+    @Benchmark
+    public USDollar getTotalPayable() {
+        return cart.getTotalPayable();
+    }
+
+    @Benchmark
+    public CartQuote quote() {
+        return cart.quote();
+    }
+
+    @Benchmark
+    public CartQuote quoteAfterChange() {
+        cart.addProduct(productInCart, 1);
+        cart.removeProduct(productInCart, 1);
+        return cart.quote();
+    }
+}
@@ -0,0 +1,32 @@
+package com.changent.benchmarks;
+
+import com.changent.entities.Product;
+import com.changent.services.ProductService;
+import com.changent.valueobjects.Money;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A ProductService over an in-memory map, like ProductServiceMockImpl,
+ * sized to the benchmark so catalog lookups cost no I/O.
+ */
+final class InMemoryCatalog implements ProductService {
+    InMemoryCatalog(int size) {
+        for (int i = 0; i < size; i++) {
+            products.put(nameOf(i), new Product("Product " + i, Money.ofCents(99 + i % 1000)));
+        }
+    }
+
+    private final Map<String, Product> products = new HashMap<>();
+
+    static String nameOf(int index) {
+        return "sku-" + index;
+    }
+
+    @Override
+    public Optional<Product> getBy(String title) {
+        return Optional.ofNullable(products.get(title));
+    }
+}
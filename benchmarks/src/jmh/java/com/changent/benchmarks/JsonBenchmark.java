@@ -0,0 +1,48 @@
+package com.changent.benchmarks;
+
+import com.changent.entities.Item;
+import com.changent.entities.Product;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JsonBenchmark {
+
+    private final String productJson = "{\"title\": \"Cheerios\",\"price\": 8.43}";
+    private final byte[] productJsonBytes = productJson.getBytes(StandardCharsets.UTF_8);
+    private final String itemJson = "{\"title\": \"Cheerios\",\"price\": 8.43, \"quantity\": 3}";
+    private final Item item = new Item(new Product("Cheerios", 8.43), 3);
+    private final ByteBuffer buffer = ByteBuffer.allocate(256);
+
+    @Benchmark
+    public Product productFromJson() {
+        return Product.fromJson(productJson);
+    }
+
+    @Benchmark
+    public Product productFromJsonBytes() {
+        return Product.fromJson(productJsonBytes);
+    }
+
+    @Benchmark
+    public Item itemFromJson() {
+        return Item.fromJson(itemJson);
+    }
+
+    @Benchmark
+    public String itemToJson() throws IOException {
+        return item.toJson();
+    }
+
+    @Benchmark
+    public int itemWriteJsonToByteBuffer() {
+        buffer.clear();
+        return item.writeJsonTo(buffer);
+    }
+}
@@ -0,0 +1,56 @@
+package com.changent.benchmarks;
+
+import com.changent.entities.Cart;
+import com.changent.metrics.CartMetrics;
+import com.changent.metrics.Histogram;
+import com.changent.metrics.MetricsRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MetricsBenchmark {
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private final Histogram histogram = registry.histogram("latency");
+
+    @State(Scope.Thread)
+    public static class Carts {
+        Cart plain;
+        Cart instrumented;
+
+        @Setup
+        public void fillCarts(MetricsBenchmark benchmark) {
+            plain = new Cart(new InMemoryCatalog(100));
+            instrumented = new Cart(new InMemoryCatalog(100));
+            instrumented.addListener(new CartMetrics(benchmark.registry));
+
+            for (int i = 0; i < 100; i++) {
+                plain.addProduct(InMemoryCatalog.nameOf(i), 1);
+                instrumented.addProduct(InMemoryCatalog.nameOf(i), 1);
+            }
+        }
+    }
+
+    // Shared by every thread, so with -t the histogram's contention shows.
+    @Benchmark
+    public void recordLatency() {
+        histogram.record(System.nanoTime() & 0xfffff);
+    }
+
+    @Benchmark
+    public Cart addAndRemove(Carts carts) {
+        carts.plain.addProduct(InMemoryCatalog.nameOf(50), 1);
+        carts.plain.removeProduct(InMemoryCatalog.nameOf(50), 1);
+        return carts.plain;
+    }
+
+    @Benchmark
+    public Cart addAndRemoveInstrumented(Carts carts) {
+        carts.instrumented.addProduct(InMemoryCatalog.nameOf(50), 1);
+        carts.instrumented.removeProduct(InMemoryCatalog.nameOf(50), 1);
+        return carts.instrumented;
+    }
+}
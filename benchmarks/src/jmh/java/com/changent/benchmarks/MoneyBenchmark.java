@@ -0,0 +1,27 @@
+package com.changent.benchmarks;
+
+import com.changent.valueobjects.Money;
+import com.changent.valueobjects.USDollar;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MoneyBenchmark {
+
+    private final USDollar subtotal = new USDollar("15.02");
+    private final long subtotalInCents = 1502;
+    private final long taxRateInMillionths = Money.millionthsOf(0.125);
+
+    @Benchmark
+    public USDollar usDollarMultiplyUsingBankersRounding() {
+        return subtotal.multiplyUsingBankersRoundingBy(0.125);
+    }
+
+    @Benchmark
+    public long moneyMultiplyUsingBankersRounding() {
+        return Money.multiplyUsingBankersRounding(subtotalInCents, taxRateInMillionths);
+    }
+}
@@ -0,0 +1,54 @@
+package com.changent.benchmarks;
+
+import com.changent.entities.Cart;
+import com.changent.promotions.Bundle;
+import com.changent.promotions.MultiBuy;
+import com.changent.promotions.Promotion;
+import com.changent.promotions.PromotionEngine;
+import com.changent.valueobjects.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PromotionBenchmark {
+
+    @Param({"0", "1000", "10000"})
+    int promotionCount;
+
+    private static final int CATALOG_SIZE = 20_000;
+
+    private Cart cart;
+    private String promotedProduct;
+
+    @Setup
+    public void attachCart() {
+        // A multibuy on every other product, and bundles pairing neighbours.
+        List<Promotion> promotions = new ArrayList<>();
+        for (int i = 0; i < promotionCount; i++) {
+            String title = "Product " + (i * 2 % CATALOG_SIZE);
+            promotions.add(i % 2 == 0
+                    ? new MultiBuy("multibuy-" + i, title, 3, 2)
+                    : new Bundle("bundle-" + i, List.of(title, "Product " + ((i * 2 + 1) % CATALOG_SIZE)), Money.of(1.00)));
+        }
+
+        cart = new Cart(new InMemoryCatalog(CATALOG_SIZE));
+        for (int i = 0; i < 100; i++) cart.addProduct(InMemoryCatalog.nameOf(i), 2);
+        new PromotionEngine(promotions).attach(cart);
+
+        promotedProduct = InMemoryCatalog.nameOf(0);
+    }
+
+    // Paired so the cart stays the same across invocations; each call is two mutations.
+
+    @Benchmark
+    public Cart addAndRemovePromotedProduct() {
+        cart.addProduct(promotedProduct, 1);
+        cart.removeProduct(promotedProduct, 1);
+        return cart;
+    }
+}